@@ -0,0 +1,82 @@
+package cellsociety.benchmarks;
+
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Purpose: Measures updateGrid() throughput, in generations per second, of the agent based
+ * simulations (Schelling and Wa-Tor) at every density
+ * <p>
+ * Assumptions: Every measurement iteration starts again from the same synthetic grid. Both
+ * simulations only touch the agents that act in a step, so they scale to large oceans and cities;
+ * the sizes match GridStepBenchmark and others can be asked for with -p size=.
+ * <p>
+ * Dependencies: SyntheticGrids and SimulationFactory
+ * <p>
+ * Example: java -jar target/benchmarks.jar AgentStepBenchmark -p type=watorworld -p size=512
+ *
+ * @author ERIC XIE
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class AgentStepBenchmark {
+
+  @Param({"schellingsegregation", "watorworld"})
+  public String type;
+
+  @Param({"64", "512", "2048", "8192"})
+  public int size;
+
+  @Param({"0.1", "0.35", "0.7"})
+  public double density;
+
+  private SimulationInfo myRecord;
+  private GridClass mySimulation;
+
+  /**
+   * Purpose: Generates the synthetic grid once per trial
+   */
+  @Setup(Level.Trial)
+  public void createGrid() {
+    myRecord = SyntheticGrids.create(type, size, density, SyntheticGrids.DEFAULT_SEED);
+  }
+
+  /**
+   * Purpose: Starts every iteration from the initial generation
+   */
+  @Setup(Level.Iteration)
+  public void createSimulation() {
+    mySimulation = SimulationFactory.create(myRecord);
+  }
+
+  /**
+   * Purpose: One generation of the simulation
+   *
+   * @return the simulation, so the step cannot be optimized away
+   */
+  @Benchmark
+  public GridClass step() {
+    mySimulation.updateGrid();
+    return mySimulation;
+  }
+
+}
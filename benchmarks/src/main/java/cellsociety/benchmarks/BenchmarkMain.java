@@ -0,0 +1,33 @@
+package cellsociety.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Purpose: Entry point of benchmarks.jar. Takes the usual JMH command line and always adds the GC
+ * profiler, so every result comes with its allocation rate (gc.alloc.rate.norm is bytes allocated
+ * per step)
+ * <p>
+ * Example: java -jar target/benchmarks.jar GridStepBenchmark -p size=2048 -rf json -rff base.json
+ *
+ * @author ERIC XIE
+ */
+
+public class BenchmarkMain {
+
+  /**
+   * @param args JMH command line options, e.g. a benchmark name pattern and -p overrides
+   * @throws RunnerException            when a benchmark fails
+   * @throws CommandLineOptionException when the options cannot be parsed
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build())
+        .run();
+  }
+
+}
@@ -0,0 +1,94 @@
+package cellsociety.benchmarks;
+
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Purpose: Measures updateGrid() throughput, in generations per second, of the grid based
+ * simulations at every benchmark size and density
+ * <p>
+ * Assumptions: Every measurement iteration starts again from the same synthetic grid, so
+ * simulations that burn out or settle are measured over the same stretch of their run each time.
+ * <p>
+ * Dependencies: SyntheticGrids and SimulationFactory
+ * <p>
+ * Example: java -jar target/benchmarks.jar GridStepBenchmark -p type=gameoflife -p threads=8
+ * <p>
+ * Misc: The forks load jdk.incubator.vector, so vector=1 measures the Vector API kernel of
+ * RockPaperScissors (and of GameOfLife when it is not bit packed) and vector=0 the cell by cell
+ * path.
+ *
+ * @author ERIC XIE
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "--add-modules=jdk.incubator.vector"})
+public class GridStepBenchmark {
+
+  @Param({"gameoflife", "rockpaperscissors", "spreadingoffire", "cspercolation",
+      "fallingsandandwater"})
+  public String type;
+
+  @Param({"64", "512", "2048", "8192"})
+  public int size;
+
+  @Param({"0.1", "0.35", "0.7"})
+  public double density;
+
+  @Param({"1"})
+  public int threads;
+
+  @Param({"1", "0"})
+  public int vector;
+
+  private SimulationInfo myRecord;
+  private GridClass mySimulation;
+
+  /**
+   * Purpose: Generates the synthetic grid once per trial
+   */
+  @Setup(Level.Trial)
+  public void createGrid() {
+    myRecord = SyntheticGrids.create(type, size, density, SyntheticGrids.DEFAULT_SEED);
+    myRecord.possibleParameters().put("Threads", threads);
+    myRecord.possibleParameters().put("Vector", vector);
+  }
+
+  /**
+   * Purpose: Starts every iteration from the initial generation
+   */
+  @Setup(Level.Iteration)
+  public void createSimulation() {
+    mySimulation = SimulationFactory.create(myRecord);
+  }
+
+  /**
+   * Purpose: One generation of the simulation
+   *
+   * @return the simulation, so the step cannot be optimized away
+   */
+  @Benchmark
+  public GridClass step() {
+    mySimulation.updateGrid();
+    return mySimulation;
+  }
+
+}
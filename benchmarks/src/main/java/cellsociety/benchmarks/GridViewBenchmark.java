@@ -0,0 +1,68 @@
+package cellsociety.benchmarks;
+
+import cellsociety.view.GridView;
+import cellsociety.view.grid.RectangleGridView;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Purpose: Measures GridView.updateGridPane, the pass that restyles every displayed cell after a
+ * step, on its own
+ * <p>
+ * Assumptions: The grid is built but never shown, so no JavaFX stage (or display) is needed; the
+ * cost measured is reading every cell state and setting the CSS ids. Every displayed cell is a node,
+ * so the sizes stop at 512.
+ * <p>
+ * Dependencies: SyntheticGrids and RectangleGridView
+ * <p>
+ * Example: java -jar target/benchmarks.jar GridViewBenchmark
+ *
+ * @author Robert Cranston
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GridViewBenchmark {
+
+  @Param({"64", "256", "512"})
+  public int size;
+
+  @Param({"gameoflife", "fallingsandandwater"})
+  public String type;
+
+  private GridView myView;
+
+  /**
+   * Purpose: Builds the view and moves the model one step so the styles actually change
+   */
+  @Setup(Level.Trial)
+  public void createView() {
+    myView = new RectangleGridView(
+        SyntheticGrids.create(type, size, 0.35, SyntheticGrids.DEFAULT_SEED));
+    myView.getCurrentGrid().updateGrid();
+  }
+
+  /**
+   * Purpose: Restyles every cell of the grid
+   */
+  @Benchmark
+  public void updateGridPane() {
+    myView.updateGridPane();
+  }
+
+}
@@ -0,0 +1,96 @@
+package cellsociety.benchmarks;
+
+import cellsociety.view.SimulationInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Purpose: Builds reproducible synthetic configurations for the benchmarks, so every run of every
+ * engine measures the exact same grids
+ * <p>
+ * Assumptions: Density is the share of cells that hold something other than the simulation's empty
+ * state. Rock Paper Scissors has no empty state, so there it is ignored and the three hands are
+ * spread evenly.
+ * <p>
+ * Dependencies: SimulationInfo and the state numbering of the cellsociety.model simulations
+ * <p>
+ * Example: SyntheticGrids.create("gameoflife", 512, 0.35, 1) gives a 512x512 Game of Life soup with
+ * about 35% of the cells alive
+ *
+ * @author ERIC XIE
+ */
+
+public class SyntheticGrids {
+
+  public static final long DEFAULT_SEED = 308;
+  public static final String[] TYPES = {"gameoflife", "rockpaperscissors", "spreadingoffire",
+      "cspercolation", "fallingsandandwater", "schellingsegregation", "watorworld"};
+
+  private SyntheticGrids() {
+  }
+
+  /**
+   * Purpose: Creates the record for a square synthetic configuration
+   *
+   * @param type    simulation type as written in the XML files
+   * @param size    number of rows and columns
+   * @param density share of non empty cells, between 0 and 1
+   * @param seed    seed of the generator, the same seed always gives the same grid
+   * @return a record that SimulationFactory can build the simulation from
+   */
+  public static SimulationInfo create(String type, int size, double density, long seed) {
+    Random random = new Random(seed);
+    int[][] grid = new int[size][size];
+    for (int row = 0; row < size; row++) {
+      for (int col = 0; col < size; col++) {
+        grid[row][col] = cellState(type, random, density, row);
+      }
+    }
+    return new SimulationInfo(type, "Synthetic " + type, "benchmarks",
+        "seeded synthetic grid with density " + density, size, size, grid, parameters(type));
+  }
+
+  // picks the state of one cell for the given simulation
+  private static int cellState(String type, Random random, double density, int row) {
+    boolean occupied = random.nextDouble() < density;
+    switch (type) {
+      case "rockpaperscissors" -> {
+        return random.nextInt(3);
+      }
+      case "spreadingoffire" -> {
+        // trees with a sprinkle of fires to start from
+        return occupied ? (random.nextDouble() < 0.01 ? 2 : 1) : 0;
+      }
+      case "cspercolation" -> {
+        // water pours in from the top row, the rest are open or blocked cells
+        return row == 0 ? 1 : (occupied ? 2 : 0);
+      }
+      case "fallingsandandwater" -> {
+        return occupied ? 1 + random.nextInt(3) : 0;
+      }
+      case "schellingsegregation" -> {
+        return occupied ? 1 + random.nextInt(2) : 0;
+      }
+      case "watorworld" -> {
+        // mostly fish with some sharks
+        return occupied ? (random.nextDouble() < 0.1 ? 2 : 1) : 0;
+      }
+      default -> {
+        return occupied ? 1 : 0;
+      }
+    }
+  }
+
+  // the parameters the simulations require, set to middle of the road values
+  private static Map<String, Integer> parameters(String type) {
+    Map<String, Integer> parameters = new HashMap<>();
+    if (type.equals("spreadingoffire")) {
+      parameters.put("Probability of Catching Fire", 50);
+    } else if (type.equals("rockpaperscissors")) {
+      parameters.put("Threshold Value", 2);
+    }
+    return parameters;
+  }
+
+}
@@ -0,0 +1,96 @@
+package cellsociety.benchmarks;
+
+import cellsociety.configuration.FileReader;
+import cellsociety.configuration.GridXMLWriter;
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Purpose: Measures how long it takes to read a configuration with FileReader and to save a grid
+ * with GridXMLWriter, the writer behind the FileWriters save dialog
+ * <p>
+ * Assumptions: The files live in the temporary folder and are deleted after the trial. An 8192x8192
+ * file is several hundred megabytes of DOM, so the sizes stop at 2048.
+ * <p>
+ * Dependencies: SyntheticGrids, FileReader and GridXMLWriter
+ * <p>
+ * Example: java -jar target/benchmarks.jar XMLBenchmark -p size=512
+ *
+ * @author Robert Cranston
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class XMLBenchmark {
+
+  @Param({"64", "512", "2048"})
+  public int size;
+
+  private SimulationInfo myRecord;
+  private GridClass mySimulation;
+  private File myInput;
+  private File myOutput;
+
+  /**
+   * Purpose: Writes the configuration the read benchmark parses
+   *
+   * @throws IOException when the temporary files cannot be created
+   */
+  @Setup(Level.Trial)
+  public void createFiles() throws IOException {
+    myRecord = SyntheticGrids.create("gameoflife", size, 0.35, SyntheticGrids.DEFAULT_SEED);
+    mySimulation = SimulationFactory.create(myRecord);
+    myInput = File.createTempFile("cellsociety-read", ".xml");
+    myOutput = File.createTempFile("cellsociety-write", ".xml");
+    new GridXMLWriter(myRecord, mySimulation).write(myInput, myRecord.title(), myRecord.author(),
+        myRecord.description());
+  }
+
+  /**
+   * Purpose: Removes the temporary files
+   */
+  @TearDown(Level.Trial)
+  public void deleteFiles() {
+    myInput.delete();
+    myOutput.delete();
+  }
+
+  /**
+   * @return the parsed record, so the parse cannot be optimized away
+   */
+  @Benchmark
+  public SimulationInfo read() {
+    return new FileReader(myInput.getPath()).getRecord();
+  }
+
+  /**
+   * Purpose: Saves the current grid the way the save dialog does
+   */
+  @Benchmark
+  public void write() {
+    new GridXMLWriter(myRecord, mySimulation).write(myOutput, myRecord.title(),
+        myRecord.author(), myRecord.description());
+  }
+
+}
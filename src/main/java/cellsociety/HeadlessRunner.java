@@ -0,0 +1,314 @@
+package cellsociety;
+
+import cellsociety.configuration.CheckpointReader;
+import cellsociety.configuration.CheckpointWriter;
+import cellsociety.configuration.FileReader;
+import cellsociety.configuration.GridXMLWriter;
+import cellsociety.configuration.HistoryRecorder;
+import cellsociety.model.GameOfLife;
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.model.engine.HashLife;
+import cellsociety.view.SimulationInfo;
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Purpose: Runs a simulation from the command line without opening a JavaFX stage, as fast as the
+ * model can step, for render-less servers and scripted pipelines
+ * <p>
+ * Assumptions: The XML file follows the same format the GUI loads. Only the model, the
+ * configuration readers/writers and the SimulationInfo record are touched, so no JavaFX classes are
+ * ever loaded.
+ * <p>
+ * Depends on FileReader, SimulationFactory, GridXMLWriter and the checkpoint readers/writers
+ * <p>
+ * Example: java -cp target/classes cellsociety.HeadlessRunner data/testSimulations/gameOfLife1.xml
+ * 1000 --threads 8 --out final.xml
+ * <p>
+ * --offheap sets the "Off Heap" parameter, so Game of Life, Percolation and Spreading Fire keep
+ * their grid in memory mapped files instead of the heap.
+ * <p>
+ * --checkpoint saves the final engine state with CheckpointWriter, and a .ckpt file given instead
+ * of the XML resumes that run where it stopped (with the parameters it was saved with).
+ * <p>
+ * --record writes every step, starting with the initial grid, to a history HistoryReader can
+ * replay, with a whole frame every --keyframe steps.
+ * <p>
+ * --jump k makes each of the steps a jump of 2^k generations with HashLife (Game of Life on the
+ * B3/S23 rule only, see GameOfLife.advanceByPowerOfTwo), and --window row,col moves the region of
+ * the unbounded HashLife plane that the counts, the final grid and the history show.
+ * <p>
+ * Other: Prints generations per second, wall time and the final count of every cell state
+ *
+ * @author Robert Cranston, Thivya Sivarajah, Eric Xie
+ */
+
+public class HeadlessRunner {
+
+  public static final String USAGE =
+      "usage: HeadlessRunner <simulation.xml|run.ckpt> <steps> [--threads n] [--out final.xml]"
+          + " [--checkpoint final.ckpt] [--offheap] [--record run.hist [--keyframe n]]"
+          + " [--jump k [--window row,col]]";
+  // steps one generation at a time when --jump is not given
+  public static final int NO_JUMP = -1;
+  // keeps the thread count of the configuration or checkpoint when --threads is not given
+  public static final int CONFIGURED_THREADS = -1;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final SimulationInfo myRecord;
+  private final GridClass myModel;
+  private HistoryRecorder myRecorder;
+  private int myJumpExponent = NO_JUMP;
+
+  /**
+   * Purpose: Reads the simulation to run
+   * <p>
+   * Exceptions: XMLException when the file cannot be read or describes an unknown simulation
+   *
+   * @param file    path of the XML configuration, or of a checkpoint to resume
+   * @param threads number of threads stepping the grid, or CONFIGURED_THREADS to keep the
+   *                "Threads" parameter of the file
+   * @param offHeap whether to keep the grid in memory mapped files, for the simulations that can
+   */
+  public HeadlessRunner(String file, int threads, boolean offHeap) {
+    if (file.endsWith(CheckpointWriter.EXTENSION)) {
+      CheckpointReader checkpoint = new CheckpointReader(file);
+      myRecord = checkpoint.getRecord();
+      myModel = checkpoint.getModel();
+    } else {
+      // set before the grid is read, so an off heap grid is streamed in rather than built whole
+      myRecord = new FileReader(file, offHeap ? Map.of("Off Heap", 1) : Map.of()).getRecord();
+      myModel = SimulationFactory.create(myRecord);
+    }
+    if (threads != CONFIGURED_THREADS) {
+      myModel.setThreadCount(threads);
+    }
+  }
+
+  /**
+   * Purpose: Records the current grid and every step run from now on to a history file
+   *
+   * @param file             the history to write
+   * @param keyframeInterval a whole frame is stored every this many steps
+   */
+  public void record(File file, int keyframeInterval) {
+    myRecorder = new HistoryRecorder(file, myRecord.height(), myRecord.width(), keyframeInterval);
+    myRecorder.capture(myModel);
+  }
+
+  /**
+   * Purpose: Makes every step of run a HashLife jump of 2^exponent generations
+   * <p>
+   * Exceptions: IllegalStateException when the simulation is not a Game of Life
+   *
+   * @param exponent the base 2 logarithm of the generations per step, or NO_JUMP
+   */
+  public void setJump(int exponent) {
+    if (exponent != NO_JUMP) {
+      lifeModel();
+    }
+    myJumpExponent = exponent;
+  }
+
+  /**
+   * Purpose: Moves the region of the HashLife plane that is counted, written and recorded
+   * <p>
+   * Exceptions: IllegalStateException when the simulation is not a Game of Life
+   *
+   * @param top  plane row shown as row 0
+   * @param left plane column shown as column 0
+   */
+  public void setViewWindow(long top, long left) {
+    lifeModel().setViewWindow(top, left);
+  }
+
+  private GameOfLife lifeModel() {
+    if (!(myModel instanceof GameOfLife)) {
+      throw new IllegalStateException("Only Game of Life can jump ahead with HashLife");
+    }
+    return (GameOfLife) myModel;
+  }
+
+  /**
+   * Purpose: Steps the simulation at full speed, then finishes writing the history if recording
+   * <p>
+   * Exceptions: the exceptions of GameOfLife.advanceByPowerOfTwo when jumping
+   *
+   * @param steps number of steps to run, each one generation or one jump
+   * @return wall time in nanoseconds
+   */
+  public long run(long steps) {
+    long start = System.nanoTime();
+    for (long step = 0; step < steps; step++) {
+      if (myJumpExponent == NO_JUMP) {
+        myModel.updateGrid();
+      } else {
+        lifeModel().advanceByPowerOfTwo(myJumpExponent);
+      }
+      if (myRecorder != null) {
+        myRecorder.capture(myModel);
+      }
+    }
+    if (myRecorder != null) {
+      myRecorder.close();
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * @return how many cells are in each state, keyed by the state's name
+   */
+  public Map<String, Integer> countStates() {
+    Map<String, Integer> counts = new TreeMap<>();
+    for (int row = 0; row < myRecord.height(); row++) {
+      for (int col = 0; col < myRecord.width(); col++) {
+        counts.merge(myModel.getCellState(row, col, false), 1, Integer::sum);
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Purpose: Saves the current grid in the same XML schema the simulation was loaded from
+   *
+   * @param file the file to write
+   */
+  public void writeGrid(File file) {
+    new GridXMLWriter(myRecord, myModel).write(file, myRecord.title(), myRecord.author(),
+        myRecord.description());
+  }
+
+  /**
+   * Purpose: Saves the whole engine state, so a later run can resume from it
+   *
+   * @param file the checkpoint to write
+   */
+  public void writeCheckpoint(File file) {
+    new CheckpointWriter(myRecord, myModel).write(file);
+  }
+
+  /**
+   * Purpose: Entry point for batch runs
+   *
+   * @param args the XML file, the number of steps and the optional flags listed in USAGE
+   */
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      exitWithUsage("expected a simulation file and a number of steps");
+    }
+    long steps = parseNumber(args[1], "<steps>", 0, Long.MAX_VALUE);
+    int threads = CONFIGURED_THREADS;
+    String out = null;
+    String checkpoint = null;
+    boolean offHeap = false;
+    String history = null;
+    int keyframeInterval = HistoryRecorder.DEFAULT_KEYFRAME_INTERVAL;
+    int jump = NO_JUMP;
+    String window = null;
+    long windowTop = 0;
+    long windowLeft = 0;
+    for (int i = 2; i < args.length; i++) {
+      String flag = args[i];
+      if (flag.equals("--offheap")) {
+        offHeap = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        exitWithUsage(flag.startsWith("--") ? flag + " needs a value" : "unknown argument " + flag);
+      }
+      String value = args[++i];
+      switch (flag) {
+        case "--threads" -> threads = (int) parseNumber(value, flag, 1, Integer.MAX_VALUE);
+        case "--out" -> out = value;
+        case "--checkpoint" -> checkpoint = value;
+        case "--record" -> history = value;
+        case "--keyframe" ->
+            keyframeInterval = (int) parseNumber(value, flag, 1, Integer.MAX_VALUE);
+        case "--jump" -> jump = (int) parseNumber(value, flag, 0, HashLife.MAX_EXPONENT);
+        case "--window" -> {
+          window = value;
+          String[] corner = value.split(",", -1);
+          if (corner.length != 2) {
+            exitWithUsage("--window needs row,col, not " + value);
+          }
+          windowTop = parseNumber(corner[0], flag, Long.MIN_VALUE, Long.MAX_VALUE);
+          windowLeft = parseNumber(corner[1], flag, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        default -> exitWithUsage("unknown argument " + flag);
+      }
+    }
+    if (window != null && jump == NO_JUMP) {
+      exitWithUsage("--window only applies with --jump");
+    }
+
+    HeadlessRunner runner;
+    try {
+      runner = new HeadlessRunner(args[0], threads, offHeap);
+      runner.setJump(jump);
+      if (window != null) {
+        runner.setViewWindow(windowTop, windowLeft);
+      }
+      if (history != null) {
+        runner.record(new File(history), keyframeInterval);
+      }
+    } catch (XMLException | IllegalStateException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return;
+    }
+    long firstStep = runner.myModel.getStepCount();
+    long nanos;
+    try {
+      nanos = runner.run(steps);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return;
+    }
+    long generations = runner.myModel.getStepCount() - firstStep;
+    double seconds = nanos / NANOS_PER_SECOND;
+    System.out.printf("simulation: %s (%dx%d, %d threads)%n", runner.myRecord.type(),
+        runner.myRecord.width(), runner.myRecord.height(), runner.myModel.getThreadCount());
+    System.out.printf("generations: %d%n", generations);
+    System.out.printf("wall time: %.3f s%n", seconds);
+    System.out.printf("generations/sec: %.1f%n", seconds > 0 ? generations / seconds : 0);
+    for (Map.Entry<String, Integer> state : runner.countStates().entrySet()) {
+      System.out.printf("%s: %d%n", state.getKey(), state.getValue());
+    }
+    if (out != null) {
+      runner.writeGrid(new File(out));
+      System.out.println("final grid written to " + out);
+    }
+    if (checkpoint != null) {
+      runner.writeCheckpoint(new File(checkpoint));
+      System.out.println("checkpoint written to " + checkpoint);
+    }
+    if (history != null) {
+      System.out.println("history of " + (steps + 1) + " frames written to " + history);
+    }
+  }
+
+  // reads a whole number in [min, max], or exits with the usage when the argument is not one
+  private static long parseNumber(String text, String name, long min, long max) {
+    try {
+      long value = Long.parseLong(text.trim());
+      if (value >= min && value <= max) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // reported below with the range
+    }
+    exitWithUsage(name + " needs a whole number from " + min + " to " + max + ", not " + text);
+    return min;
+  }
+
+  // prints what is wrong with the arguments and the usage, then exits with status 1
+  private static void exitWithUsage(String problem) {
+    System.err.println(problem);
+    System.err.println(USAGE);
+    System.exit(1);
+  }
+
+}
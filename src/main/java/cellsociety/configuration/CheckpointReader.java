@@ -0,0 +1,149 @@
+package cellsociety.configuration;
+
+import cellsociety.XMLException;
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Purpose: Reads a checkpoint written by CheckpointWriter back into a running simulation and the
+ * record it was created from
+ * <p>
+ * Assumptions: The file was written by a CheckpointWriter of the same VERSION
+ * <p>
+ * Dependencies: Depends on SimulationFactory, GridClass, SimulationInfo and java.util.zip
+ * <p>
+ * Example: CheckpointReader checkpoint = new CheckpointReader("run.ckpt"); then
+ * checkpoint.getModel().updateGrid() carries on from the saved step
+ * <p>
+ * Other: The simulation is built by SimulationFactory from a record holding the saved cells, and
+ * GridClass.readEngineState then restores the step count, the seed and the rest. There is no XML
+ * to parse and one byte per cell to inflate, so it loads far faster than the same grid as XML. A
+ * checkpoint saved with the "Off Heap" parameter set hands the simulation its cells straight off
+ * the inflating stream, one row at a time, so the grid never has to fit on the heap; those rows
+ * can only be read once, top row first, by the simulation the reader builds.
+ *
+ * @author Robert Cranston
+ */
+
+public class CheckpointReader {
+
+  private final SimulationInfo myRecord;
+  private final GridClass myModel;
+
+  /**
+   * Purpose: Reads the checkpoint and rebuilds the simulation
+   * <p>
+   * Exceptions: XMLException when the file cannot be read or is not a checkpoint, and the
+   * XMLExceptions of the simulation constructors
+   *
+   * @param file path of the checkpoint
+   */
+  public CheckpointReader(String file) {
+    try (DataInputStream header = new DataInputStream(new FileInputStream(file))) {
+      if (header.readInt() != CheckpointWriter.MAGIC
+          || header.readInt() != CheckpointWriter.VERSION) {
+        throw new XMLException("Not a checkpoint file");
+      }
+      String type = header.readUTF();
+      int width = header.readInt();
+      int height = header.readInt();
+      DataInputStream body = new DataInputStream(
+          new BufferedInputStream(new InflaterInputStream(header)));
+      String title = body.readUTF();
+      String author = body.readUTF();
+      String description = body.readUTF();
+      Map<String, Integer> parameters = new HashMap<>();
+      int parameterCount = body.readInt();
+      for (int i = 0; i < parameterCount; i++) {
+        parameters.put(body.readUTF(), body.readInt());
+      }
+      Map<String, String> textParameters = new HashMap<>();
+      int textParameterCount = body.readInt();
+      for (int i = 0; i < textParameterCount; i++) {
+        textParameters.put(body.readUTF(), body.readUTF());
+      }
+      if (parameters.getOrDefault("Off Heap", 0) != 0) {
+        myRecord = new SimulationInfo(type, title, author, description, width, height, null,
+            parameters, new StreamedRows(body, width), textParameters);
+      } else {
+        myRecord = new SimulationInfo(type, title, author, description, width, height,
+            readGrid(body, width, height), parameters, null, textParameters);
+      }
+      myModel = SimulationFactory.create(myRecord);
+      myModel.readEngineState(body);
+    } catch (IOException | UncheckedIOException e) {
+      throw new XMLException("Cannot open checkpoint");
+    }
+  }
+
+  // the saved rows read off the checkpoint as the simulation asks for them, which has to be in
+  // order since the stream cannot go back
+  private static class StreamedRows implements IntFunction<int[]> {
+
+    private final DataInputStream myIn;
+    private final byte[] myRow;
+    private int myNextRow;
+
+    StreamedRows(DataInputStream in, int width) {
+      myIn = in;
+      myRow = new byte[width];
+    }
+
+    @Override
+    public int[] apply(int row) {
+      if (row != myNextRow) {
+        throw new IllegalStateException("Checkpoint rows can only be read once, in order");
+      }
+      try {
+        myIn.readFully(myRow);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      myNextRow++;
+      int[] cells = new int[myRow.length];
+      for (int j = 0; j < myRow.length; j++) {
+        cells[j] = myRow[j];
+      }
+      return cells;
+    }
+  }
+
+  // one byte per cell, row by row
+  private int[][] readGrid(DataInputStream in, int width, int height) throws IOException {
+    int[][] grid = new int[height][width];
+    byte[] row = new byte[width];
+    for (int i = 0; i < height; i++) {
+      in.readFully(row);
+      for (int j = 0; j < width; j++) {
+        grid[i][j] = row[j];
+      }
+    }
+    return grid;
+  }
+
+  /**
+   * @return the record the saved simulation was created from, holding the saved cells unless they
+   * were streamed into an off heap grid
+   */
+  public SimulationInfo getRecord() {
+    return myRecord;
+  }
+
+  /**
+   * @return the restored simulation
+   */
+  public GridClass getModel() {
+    return myModel;
+  }
+
+}
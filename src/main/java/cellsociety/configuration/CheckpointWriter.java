@@ -0,0 +1,104 @@
+package cellsociety.configuration;
+
+import cellsociety.XMLException;
+import cellsociety.model.GridClass;
+import cellsociety.view.SimulationInfo;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Purpose: Saves the complete state of a running simulation to a compact binary checkpoint that
+ * CheckpointReader turns back into a simulation carrying on exactly where this one stopped. Unlike
+ * the XML from GridXMLWriter it keeps the step count, the seed of the random draws and what the
+ * simulation tracks besides its cells (e.g. Wa-Tor's creature ages and energies).
+ * <p>
+ * Assumptions: The record is the one the simulation was created from. Every cell state fits in a
+ * byte, like in StateGrid.
+ * <p>
+ * Dependencies: Depends on GridClass, SimulationInfo and java.util.zip
+ * <p>
+ * Example: new CheckpointWriter(record, model).write(new File("run.ckpt")), as HeadlessRunner does
+ * with --checkpoint
+ * <p>
+ * Other: The file starts with an uncompressed header (MAGIC, VERSION, type, width and height) so
+ * tools can tell what it holds without inflating it. The rest is deflated: the details, the
+ * parameters, one byte per cell row by row, then GridClass.writeEngineState.
+ *
+ * @author Robert Cranston
+ */
+
+public class CheckpointWriter {
+
+  public static final int MAGIC = 0x4353434B; // "CSCK"
+  public static final int VERSION = 1;
+  public static final String EXTENSION = ".ckpt";
+
+  private final SimulationInfo myRecord;
+  private final GridClass myModel;
+
+  /**
+   * Purpose: Constructor for CheckpointWriter class
+   *
+   * @param record SimulationInfo object the simulation was created from
+   * @param model  the simulation to save
+   */
+  public CheckpointWriter(SimulationInfo record, GridClass model) {
+    myRecord = record;
+    myModel = model;
+  }
+
+  /**
+   * Purpose: Writes the checkpoint, throwing an XMLException if unable to do so
+   *
+   * @param file the file to write
+   */
+  public void write(File file) {
+    try (DataOutputStream header = new DataOutputStream(new FileOutputStream(file))) {
+      header.writeInt(MAGIC);
+      header.writeInt(VERSION);
+      header.writeUTF(myRecord.type());
+      header.writeInt(myRecord.width());
+      header.writeInt(myRecord.height());
+      DataOutputStream body = new DataOutputStream(
+          new BufferedOutputStream(new DeflaterOutputStream(header)));
+      writeBody(body);
+      body.close();
+    } catch (IOException e) {
+      throw new XMLException("Cant write to file");
+    }
+  }
+
+  // the details, parameters, cells and engine state
+  private void writeBody(DataOutputStream out) throws IOException {
+    out.writeUTF(myRecord.title());
+    out.writeUTF(myRecord.author());
+    out.writeUTF(myRecord.description());
+    Map<String, Integer> parameters = myRecord.possibleParameters();
+    out.writeInt(parameters == null ? 0 : parameters.size());
+    if (parameters != null) {
+      for (Map.Entry<String, Integer> parameter : parameters.entrySet()) {
+        out.writeUTF(parameter.getKey());
+        out.writeInt(parameter.getValue());
+      }
+    }
+    out.writeInt(myRecord.textParameters().size());
+    for (Map.Entry<String, String> parameter : myRecord.textParameters().entrySet()) {
+      out.writeUTF(parameter.getKey());
+      out.writeUTF(parameter.getValue());
+    }
+    byte[] row = new byte[myRecord.width()];
+    for (int i = 0; i < myRecord.height(); i++) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] = (byte) myModel.getState(i, j);
+      }
+      out.write(row);
+    }
+    myModel.writeEngineState(out);
+  }
+
+}
@@ -9,14 +9,24 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXSource;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
 import java.util.Random;
 
 /**
@@ -30,20 +40,33 @@ import java.util.Random;
  * <p>
  * Example: Used in Main to read the input file
  * <p>
- * Other: Catches incorrect XML file names that are passed to it
+ * Other: Catches incorrect XML file names that are passed to it. The document is built without the
+ * contents of its row elements, which are only counted; a RowReader streams them from the file
+ * when the grid is filled. When the "Off Heap" parameter is set the grid is not built as an
+ * int[][] either: the record hands it out a row at a time, generating randomized rows or streaming
+ * the row elements as they are asked for, so a grid kept in memory mapped files never has to fit
+ * on the heap, whether the file randomizes it or lists every row. Parameters named in
+ * TEXT_PARAMETERS, like the "Rule:B36/S23" of a Game of Life, keep their text instead of being read
+ * as numbers.
  *
  * @author Robert Cranston
  */
 public class FileReader {
 
+  private static final String OFF_HEAP = "Off Heap";
+  private static final Set<String> TEXT_PARAMETERS = Set.of("Rule");
   String width = "width";
   String height = "height";
   private final List<String> tagsToAdd = List.of("type", "title", "author", "description",
       width, height);
   private Map<String, Integer> possibleParameters;
+  private Map<String, String> textParameters;
   private File myFile;
   private Map<String, String> aboutSimulation;
   private int[][] myGrid;
+  private IntFunction<int[]> myRows; // the rows of the grid, built on demand
+  private int myRowCount; // row elements in the file, which the document leaves out
+  private Map<String, Integer> myOverrides;
   private SimulationInfo myRecord;
 
   /**
@@ -56,8 +79,21 @@ public class FileReader {
    * @param file file to be read
    */
   public FileReader(String file) {
+    this(file, Map.of());
+  }
+
+  /**
+   * Initializes the file path and reads the simulation, with some parameters set on top of the ones
+   * in the file before the grid is read.
+   *
+   * @param file       file to be read
+   * @param parameters parameters replacing those of the file, e.g. "Off Heap" from the command line
+   */
+  public FileReader(String file, Map<String, Integer> parameters) {
     myFile = new File(file);
     possibleParameters = new HashMap<>();
+    textParameters = new HashMap<>();
+    myOverrides = parameters;
     readXML();
   }
 
@@ -71,8 +107,19 @@ public class FileReader {
         addToMap(description);
         addPossibleParameters(
             (Element) description.getElementsByTagName("percentageParameters").item(0));
+        possibleParameters.putAll(myOverrides);
         createGrid(document);
-        myRecord = new SimulationInfo(aboutSimulation, myGrid, possibleParameters);
+        if (possibleParameters.getOrDefault(OFF_HEAP, 0) != 0) {
+          myRecord = new SimulationInfo(aboutSimulation, null, possibleParameters, myRows,
+              textParameters);
+        } else {
+          myGrid = new int[parseInt(aboutSimulation.get(height))][];
+          for (int i = 0; i < myGrid.length; i++) {
+            myGrid[i] = myRows.apply(i);
+          }
+          myRecord = new SimulationInfo(aboutSimulation, myGrid, possibleParameters, null,
+              textParameters);
+        }
 
       } catch (XMLException e) {
         throw new XMLException(e.getMessage());
@@ -80,34 +127,36 @@ public class FileReader {
     }
   }
 
-  // creates a new 2d grid after parsing through the XML file and pulling its height and width
+  // sets up the rows of the grid after parsing through the XML file and pulling its height and
+  // width
   private void createGrid(Document document) {
     try {
-      myGrid = new int[parseInt(aboutSimulation.get(height))][parseInt(aboutSimulation.get(width))];
       Element grid = (Element) document.getElementsByTagName("array").item(0);
       if (grid.getElementsByTagName("randomize").item(0) != null) {
         createRandomGrid((Element) grid.getElementsByTagName("randomize").item(0));
       } else {
-        NodeList rows = grid.getElementsByTagName("row");
-        createDefinedGrid(rows);
+        createDefinedGrid();
       }
     } catch (ArrayIndexOutOfBoundsException | NullPointerException e) {
       throw new NullPointerException("Incorrect Array formatting");
     }
   }
 
-  // creates a random 2d grid
+  // creates random rows; every row has a generator of its own seeded from one drawn per file, so a
+  // row comes out the same however often and in whatever order it is asked for
   private void createRandomGrid(Element randomize) {
     int maxValue = Integer.parseInt(
         randomize.getElementsByTagName("maxValue").item(0).getTextContent());
-    Random rand = new Random();
-    int val;
-    for (int i = 0; i < Integer.parseInt(aboutSimulation.get("height")); i++) {
-      for (int j = 0; j < Integer.parseInt(aboutSimulation.get("width")); j++) {
-        val = rand.nextInt(maxValue + 1);
-        myGrid[i][j] = val;
+    int cols = parseInt(aboutSimulation.get(width));
+    long seed = new Random().nextLong();
+    myRows = rowNumber -> {
+      SplittableRandom rand = new SplittableRandom(seed + rowNumber);
+      int[] row = new int[cols];
+      for (int j = 0; j < cols; j++) {
+        row[j] = rand.nextInt(maxValue + 1);
       }
-    }
+      return row;
+    };
   }
 
   private void addPossibleParameters(Element parameters) {
@@ -118,7 +167,12 @@ public class FileReader {
         for (int i = 0; i < percentages.getLength(); i++) {
           Node value = percentages.item(i);
           String[] contents = value.getTextContent().split(":");
-          possibleParameters.put(contents[0].trim(), parseInt(contents[1].trim()));
+          String name = contents[0].trim();
+          if (TEXT_PARAMETERS.contains(name)) {
+            textParameters.put(name, contents[1].trim());
+          } else {
+            possibleParameters.put(name, parseInt(contents[1].trim()));
+          }
         }
       } catch (ArrayIndexOutOfBoundsException | NullPointerException e) {
         throw new XMLException("Error with possible parameters");
@@ -126,44 +180,79 @@ public class FileReader {
     }
   }
 
-  private void createDefinedGrid(NodeList rows) {
-
-    for (int i = 0; i < rows.getLength(); i++) {
-      Node row = rows.item(i);
-      addToGrid(row, i);
-    }
-  }
-
-
-  //takes in a string containing the initial values for a row and adds them to the grid instance variable
-  private void addToGrid(Node row, int rowNumber) {
-    try {
-      String rowContents = row.getTextContent();
-      rowContents = rowContents.replaceAll("\\s", "");
-      String[] strArray = rowContents.split(",");
-      int columnPosition = 0;
-      for (String element : strArray) {
-        myGrid[rowNumber][columnPosition] = parseInt(element);
-        columnPosition++;
-      }
-    } catch (NullPointerException | IndexOutOfBoundsException e) {
+  // streams the row elements as they are asked for; rows and columns the file leaves out are 0
+  private void createDefinedGrid() {
+    if (myRowCount > parseInt(aboutSimulation.get(height))) {
       throw new XMLException("Error with array format");
     }
+    myRows = new RowReader(myFile, myRowCount, parseInt(aboutSimulation.get(width)));
   }
 
-  //attempts to open the file provided in the constructor and sets badData to true if it can't.
+  //attempts to open the file provided in the constructor, leaving out what is inside its rows
   private Document openDocument() {
     try {
-      DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-      DocumentBuilder db = dbf.newDocumentBuilder();
-      Document document = db.parse(myFile);
+      SAXParserFactory spf = SAXParserFactory.newInstance();
+      spf.setNamespaceAware(true);
+      RowSkipper rows = new RowSkipper(spf.newSAXParser().getXMLReader());
+      DOMResult result = new DOMResult();
+      TransformerFactory.newInstance().newTransformer()
+          .transform(new SAXSource(rows, new InputSource(myFile.toURI().toString())), result);
+      myRowCount = rows.myCount;
+      Document document = (Document) result.getNode();
       document.getDocumentElement().normalize();
       return document;
-    } catch (IOException | SAXException | ParserConfigurationException e) {
+    } catch (TransformerException | SAXException | ParserConfigurationException e) {
       throw new XMLException("Cannot open file");
     }
   }
 
+  // passes every parsing event on to the document except the row elements and what is inside
+  // them, which it only counts
+  private static class RowSkipper extends XMLFilterImpl {
+
+    private int myCount;
+    private int myDepth; // how deep inside a row element the parser is, 0 outside of one
+
+    RowSkipper(XMLReader parent) {
+      super(parent);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+      if (myDepth == 0 && !"row".equals(localName)) {
+        super.startElement(uri, localName, qName, atts);
+        return;
+      }
+      if (myDepth++ == 0) {
+        myCount++;
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (myDepth == 0) {
+        super.endElement(uri, localName, qName);
+      } else {
+        myDepth--;
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+      if (myDepth == 0) {
+        super.characters(ch, start, length);
+      }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      if (myDepth == 0) {
+        super.ignorableWhitespace(ch, start, length);
+      }
+    }
+  }
+
   //given a root element and a list of tags to look for, it adds the tags the map private instance variable.
   private void addToMap(Element element) {
     for (String tag : tagsToAdd) {
@@ -183,7 +272,8 @@ public class FileReader {
   }
 
   /**
-   * @return int[][] with the initial state of the grid
+   * @return int[][] with the initial state of the grid, null when the "Off Heap" parameter left it
+   * to be read a row at a time from the record
    */
   public int[][] getGrid() {
     return myGrid;
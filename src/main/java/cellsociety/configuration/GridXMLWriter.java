@@ -0,0 +1,151 @@
+package cellsociety.configuration;
+
+import cellsociety.XMLException;
+import cellsociety.model.GridClass;
+import cellsociety.view.SimulationInfo;
+import java.io.File;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Purpose: Writes the current state of a simulation to an XML file in the same format FileReader
+ * reads, without needing any JavaFX
+ * <p>
+ * Assumptions: The record is the one the simulation was created from, so its width and height match
+ * the simulation's grid
+ * <p>
+ * Dependencies: Depends on the w3c and javax.xml imports, GridClass and SimulationInfo
+ * <p>
+ * Example: Used by FileWriters once the user submits the save dialog, and by HeadlessRunner to save
+ * the final grid of a batch run
+ *
+ * @author Robert Cranston
+ */
+
+public class GridXMLWriter {
+
+  private final SimulationInfo myRecord;
+  private final GridClass myCurrentGrid;
+
+  /**
+   * Purpose: Constructor for GridXMLWriter class
+   *
+   * @param record      SimulationInfo object holding the information of the simulation
+   * @param currentGrid the simulation whose current grid gets written
+   */
+  public GridXMLWriter(SimulationInfo record, GridClass currentGrid) {
+    myRecord = record;
+    myCurrentGrid = currentGrid;
+  }
+
+  /**
+   * Purpose: Writes the simulation to a file, catches an exception if unable to do so
+   *
+   * @param file        the file to write
+   * @param title       title saved in the details
+   * @param author      author saved in the details
+   * @param description description saved in the details
+   */
+  public void write(File file, String title, String author, String description) {
+    Document doc = setupDocument();
+    createXML(doc, title, author, description);
+    try {
+      TransformerFactory transformerFactory = TransformerFactory.newInstance();
+      Transformer transformer = transformerFactory.newTransformer();
+      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      DOMSource source = new DOMSource(doc);
+      StreamResult result = new StreamResult(file);
+      transformer.transform(source, result);
+    } catch (TransformerException e) {
+      throw new XMLException("Cant write to file");
+    }
+  }
+
+  // creates an XML by appending the root to the doc
+  private void createXML(Document doc, String title, String author, String description) {
+
+    Element root = doc.createElement("simulation");
+    doc.appendChild(root);
+    appendDetails(doc, root, title, author, description);
+    appendArray(doc, root);
+
+  }
+
+  // appends the array to the document that's given to the method
+  private void appendArray(Document doc, Element root) {
+    Element array = doc.createElement("array");
+    root.appendChild(array);
+    StringBuilder ret = new StringBuilder();
+    for (int i = 0; i < myRecord.height(); i++) {
+      ret.setLength(0);
+      for (int j = 0; j < myRecord.width(); j++) {
+        if (j > 0) {
+          ret.append(", ");
+        }
+        ret.append(myCurrentGrid.getCellState(i, j, true));
+      }
+      appendElement(doc, array, "row", ret.toString());
+    }
+  }
+
+  // appends general details of the simulation to the document
+  private void appendDetails(Document doc, Element root, String title, String author,
+      String description) {
+    Element details = doc.createElement("details");
+    root.appendChild(details);
+    appendElement(doc, details, "type", myRecord.type());
+    appendElement(doc, details, "title", title);
+    appendElement(doc, details, "author", author);
+    appendElement(doc, details, "description", description);
+    appendElement(doc, details, "width", "" + myRecord.width());
+    appendElement(doc, details, "height", "" + myRecord.height());
+    appendPossibleParameters(doc, details);
+  }
+
+  // appends any possible parameters for simulations that require it, numbers and text alike
+  private void appendPossibleParameters(Document doc, Element details) {
+    if (myRecord.possibleParameters() != null || !myRecord.textParameters().isEmpty()) {
+      Element percentageParameters = doc.createElement("percentageParameters");
+      details.appendChild(percentageParameters);
+      if (myRecord.possibleParameters() != null) {
+        for (String possible : myRecord.possibleParameters().keySet()) {
+          appendElement(doc, percentageParameters, "possibleValue",
+              possible + ":" + myRecord.possibleParameters().get(possible));
+        }
+      }
+      for (String possible : myRecord.textParameters().keySet()) {
+        appendElement(doc, percentageParameters, "possibleValue",
+            possible + ":" + myRecord.textParameters().get(possible));
+      }
+    }
+  }
+
+  // appends any elements needed to document
+  private void appendElement(Document doc, Element parent, String name, String value) {
+    Element node = doc.createElement(name);
+    node.appendChild(doc.createTextNode(value));
+    parent.appendChild(node);
+  }
+
+  // method for setting up the document, catches exception if it is unable to create the new file
+  private Document setupDocument() {
+    DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+    DocumentBuilder dBuilder;
+    try {
+      dBuilder = dbFactory.newDocumentBuilder();
+      return dBuilder.newDocument();
+    } catch (ParserConfigurationException e) {
+      throw new XMLException("Cannot create new file");
+    }
+  }
+
+}
@@ -0,0 +1,176 @@
+package cellsociety.configuration;
+
+import cellsociety.XMLException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Purpose: Reads any step of a history written by HistoryRecorder, for replaying a run or scrubbing
+ * back and forth through it
+ * <p>
+ * Assumptions: The history and its index were written by a HistoryRecorder of the same VERSION
+ * that was closed
+ * <p>
+ * Dependencies: Depends on the format described in HistoryRecorder
+ * <p>
+ * Example: HistoryReader history = new HistoryReader("run.hist"); byte[] cells =
+ * history.readStep(500); gives the state of cell (row, col) after 500 steps at row * cols + col
+ * <p>
+ * Other: The offsets of every frame are read from the index up front (eight bytes per step), so
+ * readStep seeks straight to the keyframe at or before the step and decodes at most one keyframe
+ * interval of frames.
+ *
+ * @author Robert Cranston
+ */
+
+public class HistoryReader implements AutoCloseable {
+
+  // magic, version, rows, cols and keyframe interval ahead of the frame offsets in the index
+  private static final int INDEX_HEADER_BYTES = 5 * Integer.BYTES;
+
+  private final int myRows;
+  private final int myCols;
+  private final int myKeyframeInterval;
+  private final long[] myOffsets;
+  private final RandomAccessFile myHistory;
+  private int myPosition;
+
+  /**
+   * Purpose: Reads the index of a history and opens it
+   * <p>
+   * Exceptions: XMLException when the files cannot be read or are not a history
+   *
+   * @param file path of the history file, its index is expected next to it
+   */
+  public HistoryReader(String file) {
+    File indexFile = new File(file + HistoryRecorder.INDEX_EXTENSION);
+    try (DataInputStream index = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(indexFile)))) {
+      if (index.readInt() != HistoryRecorder.MAGIC
+          || index.readInt() != HistoryRecorder.VERSION) {
+        throw new XMLException("Not a history file");
+      }
+      myRows = index.readInt();
+      myCols = index.readInt();
+      myKeyframeInterval = index.readInt();
+      myHistory = new RandomAccessFile(file, "r");
+      int steps = (int) ((indexFile.length() - INDEX_HEADER_BYTES) / Long.BYTES);
+      myOffsets = new long[steps + 1];
+      for (int step = 0; step < steps; step++) {
+        myOffsets[step] = index.readLong();
+      }
+      myOffsets[steps] = myHistory.length();
+    } catch (IOException e) {
+      throw new XMLException("Cannot open history");
+    }
+  }
+
+  /**
+   * @return the number of recorded steps, readStep takes 0 to this minus one
+   */
+  public int getStepCount() {
+    return myOffsets.length - 1;
+  }
+
+  /**
+   * @return number of rows of the recorded simulation
+   */
+  public int getRows() {
+    return myRows;
+  }
+
+  /**
+   * @return number of columns of the recorded simulation
+   */
+  public int getCols() {
+    return myCols;
+  }
+
+  /**
+   * Purpose: Rebuilds the cells of one step from the keyframe before it and the changes since
+   * <p>
+   * Exceptions: IndexOutOfBoundsException for a step that was not recorded, XMLException when the
+   * history cannot be read
+   *
+   * @param step the step, 0 being the first frame recorded
+   * @return the state of every cell, row after row
+   */
+  public byte[] readStep(int step) {
+    if (step < 0 || step >= getStepCount()) {
+      throw new IndexOutOfBoundsException("No step " + step + " in the history");
+    }
+    int keyframe = step - step % myKeyframeInterval;
+    byte[] frames = new byte[(int) (myOffsets[step + 1] - myOffsets[keyframe])];
+    try {
+      myHistory.seek(myOffsets[keyframe]);
+      myHistory.readFully(frames);
+    } catch (IOException e) {
+      throw new XMLException("Cannot read history");
+    }
+    byte[] cells = new byte[myRows * myCols];
+    myPosition = 0;
+    for (int frame = keyframe; frame <= step; frame++) {
+      if (frames[myPosition++] == HistoryRecorder.KEYFRAME) {
+        decodeKeyframe(frames, cells);
+      } else {
+        decodeDelta(frames, cells);
+      }
+    }
+    return cells;
+  }
+
+  // runs of one state covering every cell
+  private void decodeKeyframe(byte[] frames, byte[] cells) {
+    int cell = 0;
+    while (cell < cells.length) {
+      int length = readVarint(frames);
+      byte state = frames[myPosition++];
+      for (int end = cell + length; cell < end; cell++) {
+        cells[cell] = state;
+      }
+    }
+  }
+
+  // runs of changed cells, each after a gap of unchanged ones, up to the empty run
+  private void decodeDelta(byte[] frames, byte[] cells) {
+    int cell = readVarint(frames);
+    int length = readVarint(frames);
+    while (length > 0) {
+      System.arraycopy(frames, myPosition, cells, cell, length);
+      myPosition += length;
+      cell += length + readVarint(frames);
+      length = readVarint(frames);
+    }
+  }
+
+  private int readVarint(byte[] frames) {
+    int value = 0;
+    int shift = 0;
+    byte next;
+    do {
+      next = frames[myPosition++];
+      value |= (next & 0x7F) << shift;
+      shift += 7;
+    } while (next < 0);
+    return value;
+  }
+
+  /**
+   * Purpose: Closes the history file
+   * <p>
+   * Exceptions: XMLException when it cannot be closed
+   */
+  @Override
+  public void close() {
+    try {
+      myHistory.close();
+    } catch (IOException e) {
+      throw new XMLException("Cannot close history");
+    }
+  }
+
+}
@@ -0,0 +1,351 @@
+package cellsociety.configuration;
+
+import cellsociety.XMLException;
+import cellsociety.model.GridClass;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Purpose: Records every step of a run to disk so it can be replayed and scrubbed through later
+ * with HistoryReader, without keeping a full copy of every frame. Most steps only store the cells
+ * that changed since the step before; every keyframe interval steps a whole frame is stored, so any
+ * step can be rebuilt from at most that many frames.
+ * <p>
+ * Assumptions: Every cell state fits in a byte, like in StateGrid. capture is called from the
+ * thread stepping the simulation, once per step, and close once the run is over. The first capture
+ * hands over the whole grid.
+ * <p>
+ * Dependencies: Depends on GridClass.copyStates and java.util.concurrent
+ * <p>
+ * Example: GridView.next() calls capture(model, rows, cols) with the cells its RewindBuffer saw
+ * the step change, and HeadlessRunner calls capture(model) every step with --record run.hist
+ * <p>
+ * Other: capture(model) copies every cell into a spare buffer and queues it, waiting while
+ * QUEUED_FRAMES whole frames are still queued. capture(model, rows, cols) only reads the new states
+ * of the changed cells and queues them without ever waiting, so a step costs as much as it changed
+ * and a slow disk makes the queue grow by those changes instead of holding up the caller. Working
+ * out the runs, encoding and writing them happens on a background thread, which keeps its own copy
+ * of the grid to encode keyframes and compare whole frames against.
+ * <p>
+ * A frame is a type byte followed by either the whole grid run length encoded (a varint run length
+ * and the state of the run, repeated) or the runs of changed cells, each as the varint gap since
+ * the end of the last run, its varint length and its new states, ended by an empty run. The index
+ * file next to it (the history path plus
+ * INDEX_EXTENSION) holds a header with the grid size and keyframe interval, then the offset of
+ * every frame in the history file.
+ *
+ * @author Robert Cranston
+ */
+
+public class HistoryRecorder {
+
+  public static final int MAGIC = 0x43534853; // "CSHS"
+  public static final int VERSION = 1;
+  public static final String EXTENSION = ".hist";
+  public static final String INDEX_EXTENSION = ".idx";
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+  // whole frames captured but not yet written before capture(model) has to wait for the
+  // background thread
+  public static final int QUEUED_FRAMES = 4;
+  static final int KEYFRAME = 0;
+  static final int DELTA = 1;
+  private static final Frame END = new Frame(null, null, null);
+
+  // a captured step: either every cell, or the grid indexes of the changed cells with their states
+  private record Frame(byte[] cells, int[] changed, byte[] states) {
+
+  }
+
+  private final int myCols;
+  private final int myCells;
+  private final int myKeyframeInterval;
+  private final DataOutputStream myHistory;
+  private final DataOutputStream myIndex;
+  private final BlockingQueue<Frame> myFrames = new LinkedBlockingQueue<>();
+  private final BlockingQueue<byte[]> mySpareFrames = new ArrayBlockingQueue<>(QUEUED_FRAMES);
+  private final Thread myWriter;
+  private volatile Throwable myFailure;
+  private final byte[] myCurrent; // the background thread's copy of the last frame written
+  private byte[] myEncoded = new byte[1 << 16]; // the frame being encoded
+  private int myEncodedSize;
+  private long myOffset;
+  private volatile long myFrameCount;
+
+  /**
+   * Purpose: Creates the history and index files and starts the background writer
+   * <p>
+   * Exceptions: XMLException when the files cannot be created or the grid has more cells than a
+   * frame (one byte[]) can hold
+   *
+   * @param file             the history file, the index goes next to it
+   * @param rows             number of rows of the simulation
+   * @param cols             number of columns of the simulation
+   * @param keyframeInterval a whole frame is stored every this many steps
+   */
+  public HistoryRecorder(File file, int rows, int cols, int keyframeInterval) {
+    if ((long) rows * cols > Integer.MAX_VALUE) {
+      throw new XMLException("A grid of " + rows + " x " + cols + " cells is too large to record");
+    }
+    myCols = cols;
+    myCells = rows * cols;
+    myKeyframeInterval = Math.max(1, keyframeInterval);
+    try {
+      myHistory = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      myIndex = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(file.getPath() + INDEX_EXTENSION)));
+      myIndex.writeInt(MAGIC);
+      myIndex.writeInt(VERSION);
+      myIndex.writeInt(rows);
+      myIndex.writeInt(cols);
+      myIndex.writeInt(myKeyframeInterval);
+    } catch (IOException e) {
+      throw new XMLException("Cant write to file");
+    }
+    for (int i = 0; i < QUEUED_FRAMES; i++) {
+      mySpareFrames.add(new byte[myCells]);
+    }
+    myCurrent = new byte[myCells];
+    myWriter = new Thread(this::writeFrames, "history-recorder");
+    myWriter.setDaemon(true);
+    myWriter.start();
+  }
+
+  /**
+   * Purpose: Records the current cells of the simulation as the next step of the history. Copies
+   * every cell, a row at a time, and blocks while QUEUED_FRAMES whole frames are still waiting to
+   * be written, since dropping one would leave a step missing from the history.
+   * <p>
+   * Exceptions: XMLException when the background thread could not write an earlier frame
+   *
+   * @param model the simulation being recorded
+   */
+  public void capture(GridClass model) {
+    checkFailure();
+    byte[] frame = take(mySpareFrames);
+    model.copyStates(frame);
+    put(new Frame(frame, null, null));
+  }
+
+  /**
+   * Purpose: Records the next step of the history from the cells that changed since the last
+   * capture, reading only their new states. Never waits for the background thread.
+   * <p>
+   * Assumptions: No cell is listed twice, and every cell that changed is listed.
+   * <p>
+   * Exceptions: XMLException when the background thread could not write an earlier frame
+   *
+   * @param model the simulation being recorded
+   * @param rows  the rows of the changed cells
+   * @param cols  the columns of the changed cells, lined up with rows
+   */
+  public void capture(GridClass model, int[] rows, int[] cols) {
+    checkFailure();
+    int[] changed = new int[rows.length];
+    byte[] states = new byte[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      changed[i] = rows[i] * myCols + cols[i];
+      states[i] = (byte) model.getState(rows[i], cols[i]);
+    }
+    put(new Frame(null, changed, states));
+  }
+
+  /**
+   * Purpose: Waits for the queued frames to be written and closes both files
+   * <p>
+   * Exceptions: XMLException when a frame or the files could not be written
+   */
+  public void close() {
+    put(END);
+    try {
+      myWriter.join();
+      myHistory.close();
+      myIndex.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      myFailure = e;
+    }
+    checkFailure();
+  }
+
+  /**
+   * @return how many steps have been written so far
+   */
+  public long getFrameCount() {
+    return myFrameCount;
+  }
+
+  // runs on the background thread until close queues END. Whatever goes wrong is kept for the
+  // stepping thread to report, and the whole frames keep going back to the spares so it never
+  // waits on a thread that stopped taking them.
+  private void writeFrames() {
+    Frame frame = take(myFrames);
+    while (frame != END) {
+      if (myFailure == null) {
+        try {
+          writeFrame(frame);
+        } catch (Throwable e) {
+          myFailure = e;
+        }
+      }
+      if (frame.cells() != null) {
+        mySpareFrames.add(frame.cells());
+      }
+      frame = take(myFrames);
+    }
+  }
+
+  // encodes one frame against the one before it, brings myCurrent up to it and appends it to the
+  // history and the index
+  private void writeFrame(Frame frame) throws IOException {
+    myEncodedSize = 0;
+    boolean keyframe = myFrameCount % myKeyframeInterval == 0;
+    append(keyframe ? KEYFRAME : DELTA);
+    if (frame.cells() != null) {
+      if (!keyframe) {
+        encodeDelta(frame.cells());
+      }
+      System.arraycopy(frame.cells(), 0, myCurrent, 0, myCells);
+    } else {
+      if (myFrameCount == 0) {
+        throw new IllegalStateException("The first frame of a history has to be a whole one");
+      }
+      long[] changes = sortChanges(frame);
+      if (!keyframe) {
+        encodeChanges(changes);
+      }
+      for (long change : changes) {
+        myCurrent[(int) (change >>> Byte.SIZE)] = (byte) change;
+      }
+    }
+    if (keyframe) {
+      encodeKeyframe(myCurrent);
+    }
+    myIndex.writeLong(myOffset);
+    myHistory.write(myEncoded, 0, myEncodedSize);
+    myOffset += myEncodedSize;
+    myFrameCount++;
+  }
+
+  // every cell, as runs of one state
+  private void encodeKeyframe(byte[] frame) {
+    int start = 0;
+    while (start < myCells) {
+      int end = start + 1;
+      while (end < myCells && frame[end] == frame[start]) {
+        end++;
+      }
+      appendVarint(end - start);
+      append(frame[start]);
+      start = end;
+    }
+  }
+
+  // only the runs of cells that differ from the previous frame, then an empty run
+  private void encodeDelta(byte[] frame) {
+    int last = 0;
+    int start = Arrays.mismatch(frame, myCurrent);
+    while (start >= 0) {
+      int end = start + 1;
+      while (end < myCells && frame[end] != myCurrent[end]) {
+        end++;
+      }
+      appendVarint(start - last);
+      appendVarint(end - start);
+      ensureCapacity(end - start);
+      System.arraycopy(frame, start, myEncoded, myEncodedSize, end - start);
+      myEncodedSize += end - start;
+      last = end;
+      int same = Arrays.mismatch(frame, end, myCells, myCurrent, end, myCells);
+      start = same < 0 ? -1 : end + same;
+    }
+    appendVarint(0);
+    appendVarint(0);
+  }
+
+  // the changed cells as grid index and new state packed in a long, in grid order
+  private static long[] sortChanges(Frame frame) {
+    long[] changes = new long[frame.changed().length];
+    for (int i = 0; i < changes.length; i++) {
+      changes[i] = (long) frame.changed()[i] << Byte.SIZE | frame.states()[i] & 0xFF;
+    }
+    Arrays.sort(changes);
+    return changes;
+  }
+
+  // the same runs as encodeDelta, made of neighboring changed cells, then an empty run
+  private void encodeChanges(long[] changes) {
+    int last = 0;
+    int i = 0;
+    while (i < changes.length) {
+      int start = (int) (changes[i] >>> Byte.SIZE);
+      int end = start;
+      int first = i;
+      while (i < changes.length && (int) (changes[i] >>> Byte.SIZE) == end) {
+        end++;
+        i++;
+      }
+      appendVarint(start - last);
+      appendVarint(end - start);
+      ensureCapacity(end - start);
+      for (int change = first; change < i; change++) {
+        myEncoded[myEncodedSize++] = (byte) changes[change];
+      }
+      last = end;
+    }
+    appendVarint(0);
+    appendVarint(0);
+  }
+
+  private void append(int value) {
+    ensureCapacity(1);
+    myEncoded[myEncodedSize++] = (byte) value;
+  }
+
+  // seven bits per byte, lowest first, the high bit set on every byte but the last
+  private void appendVarint(int value) {
+    while ((value & ~0x7F) != 0) {
+      append((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    append(value);
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (myEncodedSize + bytes > myEncoded.length) {
+      myEncoded = Arrays.copyOf(myEncoded, Math.max(myEncoded.length * 2, myEncodedSize + bytes));
+    }
+  }
+
+  private void checkFailure() {
+    if (myFailure != null) {
+      throw new XMLException("Cant write to file", myFailure);
+    }
+  }
+
+  private static <T> T take(BlockingQueue<T> queue) {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while recording", e);
+    }
+  }
+
+  private void put(Frame frame) {
+    try {
+      myFrames.put(frame);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while recording", e);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package cellsociety.configuration;
+
+import static java.lang.Integer.parseInt;
+
+import cellsociety.XMLException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.IntFunction;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Purpose: Hands out the row elements of a configuration file one at a time, parsing them with a
+ * StAX stream as they are asked for, so no more than one row of the file is ever in memory
+ * <p>
+ * Assumptions: Rows are asked for top to bottom, as SimulationInfo.initialGrid and the off heap
+ * grids of GridClass do; asking for an earlier row than the last one reads the file again from the
+ * top. Rows past the ones the file lists are all 0.
+ * <p>
+ * Dependencies: javax.xml.stream
+ * <p>
+ * Example: FileReader gives the record a RowReader for the rows of a file without a randomize
+ * element
+ * <p>
+ * Other: The stream is closed once the last row is read, and opened again when a row is asked for
+ * after that.
+ *
+ * @author Robert Cranston
+ */
+class RowReader implements IntFunction<int[]> {
+
+  private static final String ROW = "row";
+
+  private final File myFile;
+  private final int myRowCount;
+  private final int myCols;
+  private InputStream myInput;
+  private XMLStreamReader myReader;
+  private int myNextRow; // the row element the stream reaches next
+
+  /**
+   * @param file     the configuration file
+   * @param rowCount how many row elements the file has
+   * @param cols     the width of the grid
+   */
+  RowReader(File file, int rowCount, int cols) {
+    myFile = file;
+    myRowCount = rowCount;
+    myCols = cols;
+  }
+
+  /**
+   * Purpose: Reads one row of the grid
+   * <p>
+   * Exceptions: XMLException when the file cannot be read again or the row lists more cells than
+   * the width
+   *
+   * @param rowNumber the row, from 0
+   * @return the states of its cells, 0 for the columns the file leaves out
+   */
+  @Override
+  public int[] apply(int rowNumber) {
+    if (rowNumber >= myRowCount) {
+      return new int[myCols];
+    }
+    try {
+      if (myReader == null || rowNumber < myNextRow) {
+        open();
+      }
+      while (myReader.hasNext()) {
+        if (myReader.next() != XMLStreamConstants.START_ELEMENT
+            || !ROW.equals(myReader.getLocalName())) {
+          continue;
+        }
+        if (myNextRow++ == rowNumber) {
+          int[] cells = parseRow(myReader.getElementText());
+          if (myNextRow == myRowCount) {
+            close();
+          }
+          return cells;
+        }
+      }
+    } catch (XMLStreamException | IOException e) {
+      throw new XMLException("Error with array format");
+    }
+    throw new XMLException("Error with array format");
+  }
+
+  //takes in a string containing the initial values for a row and parses them into a row of the grid
+  private int[] parseRow(String rowContents) {
+    try {
+      String[] strArray = rowContents.replaceAll("\\s", "").split(",");
+      int[] cells = new int[myCols];
+      int columnPosition = 0;
+      for (String element : strArray) {
+        cells[columnPosition] = parseInt(element);
+        columnPosition++;
+      }
+      return cells;
+    } catch (IndexOutOfBoundsException e) {
+      throw new XMLException("Error with array format");
+    }
+  }
+
+  private void open() throws IOException, XMLStreamException {
+    close();
+    myInput = new FileInputStream(myFile);
+    myReader = XMLInputFactory.newInstance().createXMLStreamReader(myInput);
+    myNextRow = 0;
+  }
+
+  private void close() throws IOException, XMLStreamException {
+    if (myReader != null) {
+      myReader.close();
+      myInput.close();
+      myReader = null;
+    }
+  }
+}
@@ -1,7 +1,10 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.model.unit.DisjointSet;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
+import java.util.Arrays;
 
 
 /**
@@ -31,22 +34,38 @@ import cellsociety.view.SimulationInfo;
  * cell society easier to implement. Essentially, it's an unseen block type that loops around the
  * outside of the grid, making cell status checking on the edges far easier.
  * <p>
- * The TOTAL_NEIGHBORS_CHECKED final static private int is for selecting the first 4 elements of the
- * neighbor status grid, as only the North, South, East, and West directions need to be checked.
+ * Only the North, South, East, and West directions need to be checked, so the water check counts
+ * the von Neumann neighbors of the cell. By default a step only looks at the wet frontier, the
+ * cells that filled last step, and fills their EMPTY neighbors, so a step costs as much as the
+ * frontier is long instead of the whole grid. Setting the optional "Frontier" parameter to 0 goes
+ * back to checking every EMPTY cell, skipping the tiles of the grid where nothing changed around
+ * them last step. Both give the exact same grid after every step.
+ * <p>
+ * percolates() and getFinalFilledCells() answer where the water ends up without stepping at all:
+ * one union-find pass joins every open cell with its open neighbors, and every cell sharing a set
+ * with a FILLED cell is wet once the animation settles.
+ * <p>
+ * Setting the optional "Off Heap" parameter to 1 keeps the grid in memory mapped files (see
+ * MappedGrid) for grids larger than the heap and checks every EMPTY cell each step, streaming the
+ * grid through a window of rows.
  *
  * @author ERIC XIE
  */
 
 public class CsPercolation extends GridClass {
 
-  private static Cell[][] percolationGrid;
+  private StateGrid percolationGrid;
+  private Neighborhood neighborhood;
+  private int[] frontier; // grid indices of the cells that filled last step, null for full scans
+  private int[] nextFrontier;
+  private int frontierSize;
+  private int[] restoredEmpty = new int[Neighborhood.VON_NEUMANN_SIZE]; // cells a rewind emptied
+  private int restoredEmptyCount;
 
   private final static int EMPTY = 0;
   private final static int FILLED = 1;
   private final static int BLOCKED = 2;
 
-  private final static int TOTAL_NEIGHBORS_CHECKED = 4;
-
   /**
    * Purpose: The CSPercolation constructor, which creates a CS Percolation simulation object
    * <p>
@@ -65,71 +84,136 @@ public class CsPercolation extends GridClass {
   public CsPercolation(SimulationInfo record) {
 
     // padding the edges of the grid to check for neighbors
-    int[][] inputData = record.initialGrid();
-    percolationGrid = new Cell[inputData.length + 2][inputData[0].length + 2];
-    fillBlockedPadding(percolationGrid);
-
-    for (int row = 1; row < percolationGrid.length - 1; row++) {
-      for (int col = 1; col < percolationGrid[0].length - 1; col++) {
-
-        // each cell is initialized into the percolationGrid
-        percolationGrid[row][col].setState(inputData[row - 1][col - 1]);
-        percolationGrid[row][col].setNextGenState(inputData[row - 1][col - 1]);
-
-      }
+    if (getParameter(record, OFF_HEAP, 0) != 0) {
+      percolationGrid = initializeMappedGrid(record, BLOCKED);
+      neighborhood = getNeighborhood();
+      setThreadCount(getParameter(record, THREADS, 1));
+      return;
+    }
+    percolationGrid = initializeGrid(record.initialGrid(), BLOCKED, true);
+    neighborhood = getNeighborhood();
+    if (getParameter(record, FRONTIER, 1) != 0) {
+      initializeFrontier();
+    } else {
+      trackTiles();
+      setThreadCount(getParameter(record, THREADS, 1));
     }
 
   }
 
-  // main algorithm for all cells in the percolationGrid that simulates the water in each step
-
-  private void percolationAlgo() {
+  // every FILLED cell starts out on the frontier; no cell fills twice, so the frontier never holds
+  // more than the grid has cells. Sized by the padded buffer, whose length is already an int.
 
-    for (int row = 1; row < percolationGrid.length - 1; row++) {
-      for (int col = 1; col < percolationGrid[0].length - 1; col++) {
+  private void initializeFrontier() {
 
-        Cell currentCell = percolationGrid[row][col];
-
-        if (currentCell.getMyState() == EMPTY) {
-          checkWater(currentCell, row, col);
+    int cells = percolationGrid.current().length;
+    frontier = new int[cells];
+    nextFrontier = new int[cells];
+    byte[] current = percolationGrid.current();
+    for (int row = 0; row < percolationGrid.getRows(); row++) {
+      for (int col = 0; col < percolationGrid.getCols(); col++) {
+        int index = percolationGrid.index(row, col);
+        if (current[index] == FILLED) {
+          frontier[frontierSize++] = index;
         }
-
       }
     }
-
-
   }
 
-  // applies the algorithm to the cell[][] array specifically for empty cells
-
-  private void checkWater(Cell inputCell, int row, int col) {
-
-    // this algorithm only checks the N, E, S, W of the cell
+  // keeps the cells a rewind empties again; water never drains, so they are the only ones it
+  // writes
+  @Override
+  protected void restoreState(int row, int col, int state) {
+    super.restoreState(row, col, state);
+    if (frontier != null && state == EMPTY) {
+      if (restoredEmptyCount == restoredEmpty.length) {
+        restoredEmpty = Arrays.copyOf(restoredEmpty, restoredEmptyCount * 2);
+      }
+      restoredEmpty[restoredEmptyCount++] = percolationGrid.index(row, col);
+    }
+  }
 
-    int[] cellNeighbors = inputCell.neighborStatus(percolationGrid, row, col,
-        percolationGrid.length, percolationGrid[0].length);
+  // after stepping backward the frontier is the FILLED neighbors of the emptied cells: the
+  // frontier fills every EMPTY cell next to it, so those are exactly the frontier cells that still
+  // had water to pass on. With nothing emptied the grid and frontier are unchanged.
+  @Override
+  protected void cellsRestored(long step) {
+    super.cellsRestored(step);
+    if (frontier == null || restoredEmptyCount == 0) {
+      restoredEmptyCount = 0;
+      return;
+    }
+    byte[] current = percolationGrid.current();
+    int[] wet = new int[restoredEmptyCount * Neighborhood.VON_NEUMANN_SIZE];
+    int count = 0;
+    for (int i = 0; i < restoredEmptyCount; i++) {
+      for (int direction = 0; direction < Neighborhood.VON_NEUMANN_SIZE; direction++) {
+        int index = restoredEmpty[i] + neighborhood.offset(direction);
+        if (current[index] == FILLED) {
+          wet[count++] = index;
+        }
+      }
+    }
+    // a cell next to several emptied cells is only put on the frontier once
+    Arrays.sort(wet, 0, count);
+    frontierSize = 0;
+    for (int i = 0; i < count; i++) {
+      if (i == 0 || wet[i] != wet[i - 1]) {
+        frontier[frontierSize++] = wet[i];
+      }
+    }
+    restoredEmptyCount = 0;
+  }
 
-    for (int i = 0; i < TOTAL_NEIGHBORS_CHECKED; i++) {
+  // fills the EMPTY neighbors of last step's frontier, which become the next frontier; they are
+  // written to both buffers so they are FILLED the moment they are seen and never queued twice,
+  // while cells that fill this step are not on the frontier being read, so water still moves one
+  // cell per step
+
+  private void stepFrontier() {
+
+    byte[] current = percolationGrid.current();
+    byte[] next = percolationGrid.next();
+    int nextSize = 0;
+    for (int i = 0; i < frontierSize; i++) {
+      for (int direction = 0; direction < Neighborhood.VON_NEUMANN_SIZE; direction++) {
+        int index = frontier[i] + neighborhood.offset(direction);
+        if (current[index] == EMPTY) {
+          logChange(index, EMPTY);
+          current[index] = FILLED;
+          next[index] = FILLED;
+          nextFrontier[nextSize++] = index;
+        }
+      }
+    }
+    int[] temp = frontier;
+    frontier = nextFrontier;
+    nextFrontier = temp;
+    frontierSize = nextSize;
+    advanceStep();
+  }
 
-      if (cellNeighbors[i] == FILLED) {
-        inputCell.setNextGenState(FILLED);
+  // main algorithm for a cell in the percolationGrid that simulates the water in each step, run by
+  // stepActiveTiles on the regions water can still reach
 
-      }
+  private void percolationAlgo(int index) {
 
+    byte[] current = percolationGrid.current();
+    percolationGrid.next()[index] = current[index];
+    if (current[index] == EMPTY) {
+      checkWater(index);
     }
+
   }
 
-  // this method is used when creating the specific gameOfLife grid in each gameOfLife simulation
-  // it takes the newly created grid and fills the entire thing with blocked cells
+  // applies the algorithm to the cell[][] array specifically for empty cells
 
-  private void fillBlockedPadding(Cell[][] percolationGrid) {
+  private void checkWater(int index) {
 
-    for (int row = 0; row < percolationGrid.length; row++) {
-      for (int col = 0; col < percolationGrid[0].length; col++) {
+    // this algorithm only checks the N, E, S, W of the cell
 
-        percolationGrid[row][col] = new Cell();
-        percolationGrid[row][col].setState(BLOCKED);
-      }
+    if (neighborhood.countVonNeumann(percolationGrid.current(), index, FILLED) > 0) {
+      percolationGrid.next()[index] = FILLED;
     }
   }
 
@@ -151,12 +235,110 @@ public class CsPercolation extends GridClass {
   @Override
   public void updateGrid() {
 
-    percolationAlgo();
-    for (int row = 1; row < percolationGrid.length - 1; row++) {
-      for (int col = 1; col < percolationGrid[0].length - 1; col++) {
-        percolationGrid[row][col].setState(percolationGrid[row][col].getNextGenState());
+    if (isOffHeap()) {
+      stepMappedBands(this::percolationAlgo);
+    } else if (frontier != null) {
+      stepFrontier();
+    } else {
+      stepActiveTiles(this::percolationAlgo);
+    }
+  }
+
+  /**
+   * @return the number of cells that filled last step, or -1 when every EMPTY cell is checked
+   */
+
+  public int getFrontierSize() {
+
+    return frontier != null ? frontierSize : -1;
+  }
+
+  /**
+   * Purpose: Tells if water from the currently FILLED cells will reach the bottom row once the
+   * simulation settles, without stepping it
+   * <p>
+   * Assumptions: Only EMPTY cells take on water and they only take it from their N, E, S, W
+   * neighbors, so water ends up in exactly the open cells connected to a FILLED cell
+   *
+   * <p>
+   * Exceptions: IllegalStateException when the grid is kept off heap
+   *
+   * @return whether some cell of the bottom row ends up FILLED
+   */
+
+  public boolean percolates() {
+
+    DisjointSet openCells = connectOpenCells();
+    int source = percolationGrid.current().length;
+    int lastRow = percolationGrid.getRows() - 1;
+    for (int col = 0; col < percolationGrid.getCols(); col++) {
+      int index = percolationGrid.index(lastRow, col);
+      if (percolationGrid.current()[index] != BLOCKED && openCells.connected(source, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Purpose: Gives every cell that is FILLED once the simulation settles, without stepping it
+   * <p>
+   * Assumptions: Same as percolates(), the answer is for the grid as it is right now, so asking
+   * midway through the animation gives the same set as asking at the start
+   *
+   * <p>
+   * Exceptions: IllegalStateException when the grid is kept off heap
+   *
+   * @return a rows x cols array that is true for the cells water ends up in
+   */
+
+  public boolean[][] getFinalFilledCells() {
+
+    DisjointSet openCells = connectOpenCells();
+    int source = percolationGrid.current().length;
+    boolean[][] filled = new boolean[percolationGrid.getRows()][percolationGrid.getCols()];
+    for (int row = 0; row < filled.length; row++) {
+      for (int col = 0; col < filled[row].length; col++) {
+        int index = percolationGrid.index(row, col);
+        filled[row][col] = percolationGrid.current()[index] != BLOCKED
+            && openCells.connected(source, index);
+      }
+    }
+    return filled;
+  }
+
+  // unions every open cell with its open right and down neighbors and every FILLED cell with a
+  // source node one past the last grid index; the BLOCKED border keeps the right and down neighbors
+  // in bounds
+
+  private DisjointSet connectOpenCells() {
+
+    if (isOffHeap()) {
+      throw new IllegalStateException("The union-find needs the grid on the heap");
+    }
+    byte[] current = percolationGrid.current();
+    int source = current.length;
+    int right = neighborhood.offset(Neighborhood.RIGHT);
+    int down = neighborhood.offset(Neighborhood.DOWN);
+    DisjointSet openCells = new DisjointSet(current.length + 1);
+    for (int row = 0; row < percolationGrid.getRows(); row++) {
+      int end = percolationGrid.index(row, percolationGrid.getCols() - 1);
+      for (int index = percolationGrid.index(row, 0); index <= end; index++) {
+        if (current[index] == BLOCKED) {
+          continue;
+        }
+        if (current[index] == FILLED) {
+          openCells.union(source, index);
+        }
+        if (current[index + right] != BLOCKED) {
+          openCells.union(index, index + right);
+        }
+        if (current[index + down] != BLOCKED) {
+          openCells.union(index, index + down);
+        }
       }
     }
+    return openCells;
   }
 
   /**
@@ -181,9 +363,10 @@ public class CsPercolation extends GridClass {
   @Override
   public String getCellState(int row, int col, boolean intValue) {
 
-    if (percolationGrid[row + 1][col + 1].getMyState() == 0) {
+    int state = getState(row, col);
+    if (state == 0) {
       return intValue ? "0" : "EMPTY";
-    } else if (percolationGrid[row + 1][col + 1].getMyState() == 1) {
+    } else if (state == 1) {
       return intValue ? "1" : "WATERFILLED";
     } else {
       return intValue ? "2" : "WATERBLOCKED";
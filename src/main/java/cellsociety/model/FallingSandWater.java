@@ -1,8 +1,8 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.model.unit.StateGrid;
+import cellsociety.model.unit.TileTracker;
 import cellsociety.view.SimulationInfo;
-import java.util.ArrayList;
 
 /**
  * Falling Sand Water simulation class
@@ -17,8 +17,8 @@ import java.util.ArrayList;
  * <p>
  * Dependencies: This depends on all the imported javafx lines contained in the cellsociety.model
  * package. Furthermore, it imports the cellsociety.view.SimulationInfo record, which contains the
- * necessary info to create the simulation. This also imports the cellsociety model Cell unit. It
- * imports the ArrayList to hold the specific indices of the neighborStatus array we need to check.
+ * necessary info to create the simulation. This also imports the cellsociety model StateGrid unit
+ * and updates it in place.
  * <p>
  * Examples: One example of how to use is to create an XML file following the examples provided in
  * the resources file labeled with csPercolation. The labels for cells range from 0 to 3 with them
@@ -28,25 +28,38 @@ import java.util.ArrayList;
  * Once in the simulation, you can switch between files by using the upload file functionality and
  * choosing the XML file of choice in the resources file.
  * <p>
- * <p>
  * Misc: I like this simulation it's pretty cool.
+ * <p>
+ * Other: The grid is stepped as Margolus style 2x2 blocks whose corner shifts by one row and column
+ * every step. A block only looks at and changes its own four cells, so the result does not depend
+ * on the order blocks are visited in and the optional "Threads" parameter steps bands of blocks in
+ * parallel. This changes how water moves compared to picking among all its open directions: water
+ * now always falls when the cell below it is empty, and only otherwise moves to the empty cell
+ * beside it in its block, with probability 1/2. That draw comes from the seeded generator of
+ * GridClass, so an optional "Seed" parameter gives the same flow every run, whatever the thread
+ * count.
+ * <p>
+ * The grid is split into 16x16 chunks that fall asleep once none of their particles can move and
+ * nothing changed around them. A sleeping chunk is skipped until a neighboring chunk changes, so
+ * settled piles and pools cost nothing. Sleeping only skips blocks that could not have changed, so
+ * the result is the same as stepping every block.
  *
  * @author ERIC XIE
  */
 
 public class FallingSandWater extends GridClass {
 
-  private Cell[][] sandWaterGrid;
+  private StateGrid sandWaterGrid;
+  private TileTracker chunks;
+  private int stride;
 
   private final static int EMPTY = 0;
   private final static int METAL = 1;
   private final static int WATER = 2;
   private final static int SAND = 3;
-
-  private final static int[] waterDirectionIndexes = {0, 2, 3};
-  private final static int WATER_DIRECTION_RIGHT = 2;
-  private final static int WATER_DIRECTION_LEFT = 3;
-  private final static int WATER_DIRECTION_DOWN = 0;
+  private final static int OUT_OF_BOUNDS = -1; // border state, never moved into
+  private final static int NO_CELL = -1;
+  private final static int BLOCK_CELLS = 4;
 
   private int gridWidth;
   private int gridHeight;
@@ -68,129 +81,187 @@ public class FallingSandWater extends GridClass {
 
   public FallingSandWater(SimulationInfo record) {
 
-    int[][] inputData = record.initialGrid();
-    sandWaterGrid = new Cell[inputData.length][inputData[0].length];
-    initializeGrid(sandWaterGrid);
+    // every block only rewrites its own four cells, so the grid is updated in place
+    sandWaterGrid = initializeGrid(record.initialGrid(), OUT_OF_BOUNDS, false);
+    stride = sandWaterGrid.getStride();
+    trackTiles();
+    chunks = getTiles();
+    initializeRandom(record);
+    setThreadCount(getParameter(record, THREADS, 1));
 
-    for (int row = 0; row < sandWaterGrid.length; row++) {
-      for (int col = 0; col < sandWaterGrid[0].length; col++) {
-        sandWaterGrid[row][col].setState(inputData[row][col]);
-        sandWaterGrid[row][col].setNextGenState(inputData[row][col]);
-      }
-    }
-
-    gridHeight = sandWaterGrid.length;
-    gridWidth = sandWaterGrid[0].length;
+    gridHeight = sandWaterGrid.getRows();
+    gridWidth = sandWaterGrid.getCols();
 
   }
 
   // main private algorithm for moving the sand and water cells as well as their interactions with
-  // one another and metals
+  // one another and metals, one 2x2 block at a time; the blocks start one row and column further
+  // up and left every other step, so nothing is stuck on a block edge for more than a step. Only
+  // the blocks of awake chunks are stepped, then every particle of those blocks that could still
+  // move keeps its chunk awake for the next step
 
   private void sandWaterAlgo() {
 
-    for (int row = 0; row < gridHeight; row++) {
-      for (int col = 0; col < gridWidth; col++) {
+    int offset = (int) (getStepCount() % 2);
+    forEachBand(chunks.getTileRows(),
+        (fromChunkRow, toChunkRow) -> forAwakeBlocks(fromChunkRow, toChunkRow, offset,
+            this::updateBlock));
+    forEachBand(chunks.getTileRows(),
+        (fromChunkRow, toChunkRow) -> forAwakeBlocks(fromChunkRow, toChunkRow, offset,
+            this::markUnsettled));
+    chunks.advance();
 
-        Cell currentCell = sandWaterGrid[row][col];
+  }
 
-        if (currentCell.getMyState() == WATER) {
-          waterFall(currentCell, row, col);
-        } else if (currentCell.getMyState() == SAND) {
-          sandFall(currentCell, row, col);
-        }
+  // visits the top left corner of every block belonging to the awake chunks of a band of chunk
+  // rows; a block belongs to the chunk its top left corner is in once the offset is taken off, and
+  // the last chunk row and column also take the blocks that hang off the grid into the border
 
+  private void forAwakeBlocks(int fromChunkRow, int toChunkRow, int offset, BlockVisitor visitor) {
+
+    for (int chunkRow = fromChunkRow; chunkRow < toChunkRow; chunkRow++) {
+      int firstRow = chunks.firstRow(chunkRow) - offset;
+      int endRow = chunkRow == chunks.getTileRows() - 1 ? gridHeight
+          : chunks.endRow(chunkRow) - offset;
+      for (int chunkCol = 0; chunkCol < chunks.getTileCols(); chunkCol++) {
+        if (!chunks.isActive(chunkRow, chunkCol)) {
+          continue;
+        }
+        int firstCol = chunks.firstCol(chunkCol) - offset;
+        int endCol = chunkCol == chunks.getTileCols() - 1 ? gridWidth
+            : chunks.endCol(chunkCol) - offset;
+        for (int row = firstRow; row < endRow; row += 2) {
+          for (int col = firstCol; col < endCol; col += 2) {
+            visitor.visit(row, col);
+          }
+        }
       }
     }
 
   }
 
-  // handled the water falling algorithm and its interactions if it came into contact with metal,
-  // water, or sand
-
-  // also handled the randomness movement of water using Math.random
-
-  private void waterFall(Cell inputCell, int row, int col) {
+  // what to do with the block whose top left cell is at the given row and column
+  private interface BlockVisitor {
 
-    int[] neighborData = inputCell.neighborStatus(sandWaterGrid, row, col, gridHeight,
-        gridWidth);
-    int[] neighborNextGen = inputCell.neighborNextStatus(sandWaterGrid, row, col,
-        gridHeight, gridWidth);
-    ArrayList<Integer> emptyDirections = new ArrayList<>();
+    void visit(int row, int col);
+  }
 
-    // adds empty directions to an arraylist
-    for (int index : waterDirectionIndexes) {
-      if (neighborData[index] == EMPTY && neighborNextGen[index] == EMPTY) {
-        emptyDirections.add(index);
-      }
+  // updates the block whose top left cell is at the given row and column: sand falls first,
+  // sinking through water, then each water that has not moved yet flows down or sideways inside
+  // the block. The chunks of the cells that changed are marked, so they and the chunks around them
+  // wake up for the next step
+
+  private void updateBlock(int row, int col) {
+
+    byte[] current = sandWaterGrid.current();
+    int topLeft = sandWaterGrid.index(row, col);
+    int topRight = topLeft + 1;
+    int bottomLeft = topLeft + stride;
+    int bottomRight = bottomLeft + 1;
+    // the block packed into an int, to find the cells that changed without allocating
+    int before = packBlock(current, topLeft);
+
+    sandFall(current, topLeft, bottomLeft);
+    sandFall(current, topRight, bottomRight);
+
+    int movedFromTopLeft = waterFall(current, topLeft, bottomLeft, topRight);
+    int movedFromTopRight = movedFromTopLeft == topRight ? NO_CELL
+        : waterFall(current, topRight, bottomRight, topLeft);
+    int movedFromBottomLeft = movedFromTopLeft == bottomLeft || movedFromTopRight == bottomLeft
+        ? NO_CELL : waterFall(current, bottomLeft, NO_CELL, bottomRight);
+    if (movedFromTopRight != bottomRight && movedFromBottomLeft != bottomRight) {
+      waterFall(current, bottomRight, NO_CELL, bottomLeft);
     }
-    if (emptyDirections.size() != 0) {
-      int index = chooseRandomDirection(emptyDirections.size());
-      // need to check if next
-      changeWaterNextStatus(row, col, emptyDirections, index);
 
+    int changed = before ^ packBlock(current, topLeft);
+    for (int cell = 0; cell < BLOCK_CELLS; cell++) {
+      if ((changed >>> (8 * cell) & 0xFF) != 0) {
+        logChange(topLeft + cell / 2 * stride + cell % 2, before >>> (8 * cell) & 0xFF);
+        chunks.markChangedAt(row + cell / 2, col + cell % 2);
+      }
     }
 
   }
 
-  // changed and moved the water cells based on where they moved, using an arraylist of the direction
-  // indices
-
-  private void changeWaterNextStatus(int row, int col, ArrayList<Integer> emptyDirections,
-      int index) {
-    if (emptyDirections.get(index) == WATER_DIRECTION_LEFT) {
-      sandWaterGrid[row][col - 1].setNextGenState(WATER);
-    } else if (emptyDirections.get(index) == WATER_DIRECTION_RIGHT) {
-      sandWaterGrid[row][col + 1].setNextGenState(WATER);
-    } else if (emptyDirections.get(index) == WATER_DIRECTION_DOWN) {
-      sandWaterGrid[row + 1][col].setNextGenState(WATER);
-    }
-    if (sandWaterGrid[row][col].getNextGenState() == EMPTY
-        || sandWaterGrid[row][col].getNextGenState() == WATER) {
-      sandWaterGrid[row][col].setNextGenState(EMPTY);
-    }
+  // the four states of a block, one per byte, top left first
+
+  private int packBlock(byte[] current, int topLeft) {
+
+    return (current[topLeft] & 0xFF) | (current[topLeft + 1] & 0xFF) << 8
+        | (current[topLeft + stride] & 0xFF) << 16 | (current[topLeft + stride + 1] & 0xFF) << 24;
 
   }
 
-  // handled the sand movement as it fell and its interactions if it came into contact with metal or water
+  // keeps the chunk of every particle of the block that could still move awake, looking at its
+  // neighbors outside the block too, so a chunk only falls asleep once all of it has settled
 
-  private void sandFall(Cell inputCell, int row, int col) {
+  private void markUnsettled(int row, int col) {
 
-    int[] neighborData = inputCell.neighborStatus(sandWaterGrid, row, col, gridHeight, gridWidth);
-    int[] neighborNextGen = inputCell.neighborNextStatus(sandWaterGrid, row, col, gridHeight,
-        gridWidth);
+    for (int cell = 0; cell < BLOCK_CELLS; cell++) {
+      if (canMove(sandWaterGrid.index(row + cell / 2, col + cell % 2))) {
+        chunks.markChangedAt(row + cell / 2, col + cell % 2);
+      }
+    }
 
-    int bottomCellStatus = neighborData[0];
+  }
+
+  // sand can move onto empty cells or water below it, water onto empty cells below or beside it
 
-    if (bottomCellStatus == EMPTY) {
-      sandWaterGrid[row + 1][col].setNextGenState(SAND);
-      sandWaterGrid[row][col].setNextGenState(EMPTY);
-    } else if (bottomCellStatus == WATER) {
-      sandWaterGrid[row + 1][col].setNextGenState(SAND);
-      sandWaterGrid[row][col].setNextGenState(WATER);
+  private boolean canMove(int index) {
+
+    byte[] current = sandWaterGrid.current();
+    if (current[index] == SAND) {
+      int below = current[index + stride];
+      return below == EMPTY || below == WATER;
+    } else if (current[index] == WATER) {
+      return current[index + stride] == EMPTY || current[index - 1] == EMPTY
+          || current[index + 1] == EMPTY;
     }
+    return false;
 
   }
 
-  // takes the initialized Grid and fills it with new cells
+  // handled the sand movement as it fell and its interactions if it came into contact with water,
+  // swapping places with it; metal and the border hold it up
 
-  private void initializeGrid(Cell[][] inputGrid) {
+  private void sandFall(byte[] current, int index, int below) {
 
-    for (int row = 0; row < inputGrid.length; row++) {
-      for (int col = 0; col < inputGrid[0].length; col++) {
+    if (current[index] == SAND && (current[below] == EMPTY || current[below] == WATER)) {
+      current[index] = current[below];
+      current[below] = SAND;
+    }
 
-        inputGrid[row][col] = new Cell();
+  }
 
-      }
+  // handled the water falling algorithm inside the block: the water falls into an empty cell
+  // below it, and otherwise flows into an empty cell beside it half the time, since a block only
+  // shows one of its two sides; the seeded random draws of GridClass pick, and the water's new
+  // spot is returned so the same water is not moved twice
+
+  private int waterFall(byte[] current, int index, int below, int beside) {
+
+    if (current[index] != WATER) {
+      return NO_CELL;
     }
+    int destination;
+    if (below != NO_CELL && current[below] == EMPTY) {
+      destination = below;
+    } else if (current[beside] == EMPTY && chooseRandomDirection(index, 2) == 0) {
+      destination = beside;
+    } else {
+      return NO_CELL;
+    }
+    current[destination] = WATER;
+    current[index] = EMPTY;
+    return destination;
 
   }
 
-  // returns a random number between one and the arraysize - 1 in order to choose an indice out
-  // of the arraylist which contains the possible directions the water could go
+  // returns a random number between zero and the arraysize - 1 in order to choose what the water
+  // does, drawn for the water cell at the given grid index
 
-  private int chooseRandomDirection(int arraySize) {
-    return 0 + (int) (Math.random() * (arraySize));
+  private int chooseRandomDirection(int index, int arraySize) {
+    return randomInt(sandWaterGrid.rowOf(index), sandWaterGrid.colOf(index), 0, arraySize);
   }
 
   /**
@@ -216,11 +287,12 @@ public class FallingSandWater extends GridClass {
 
   public String getCellState(int row, int col, boolean intValue) {
 
-    if (sandWaterGrid[row][col].getMyState() == METAL) {
+    int state = sandWaterGrid.getState(row, col);
+    if (state == METAL) {
       return intValue ? "" + METAL : "METAL";
-    } else if (sandWaterGrid[row][col].getMyState() == WATER) {
+    } else if (state == WATER) {
       return intValue ? "" + WATER : "WATERFILLED";
-    } else if (sandWaterGrid[row][col].getMyState() == SAND) {
+    } else if (state == SAND) {
       return intValue ? "" + SAND : "SAND";
     } else {
       return intValue ? "" + EMPTY : "EMPTY";
@@ -246,11 +318,7 @@ public class FallingSandWater extends GridClass {
   @Override
   public void updateGrid() {
     sandWaterAlgo();
-    for (int row = 0; row < gridHeight; row++) {
-      for (int col = 0; col < gridWidth; col++) {
-        sandWaterGrid[row][col].setState(sandWaterGrid[row][col].getNextGenState());
-      }
-    }
+    advanceStep();
 
   }
 
@@ -1,6 +1,12 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.XMLException;
+import cellsociety.model.engine.HashLife;
+import cellsociety.model.engine.PackedLife;
+import cellsociety.model.engine.StencilKernel;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.RuleTable;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
 
 /**
@@ -29,6 +35,33 @@ import cellsociety.view.SimulationInfo;
  * Misc: The BLOCKED cell type isn't really used in this program and is more for making the logic of
  * cell society easier to implement. Essentially, it's an unseen block type that loops around the
  * outside of the grid, making cell status checking on the edges far easier.
+ * <p>
+ * Configurations that only hold EMPTY and ALIVE cells are run by the bit packed PackedLife engine,
+ * which updates 64 cells per word operation and gives the same results as the rules below. Setting
+ * the optional "Bit Packing" parameter to 0 forces the cell by cell path. Both paths split the grid
+ * into tiles and skip the tiles where nothing changed nearby last step, so still lifes and empty
+ * space are free; getActiveTileCount() shows how many tiles are still being evaluated. The optional
+ * "Threads" parameter (or setThreadCount) spreads the tiles over several threads without changing
+ * the results.
+ * <p>
+ * advanceByPowerOfTwo(k) jumps 2^k generations ahead at once by handing the current generation to
+ * the HashLife engine. From then on the simulation runs on an unbounded plane: patterns leaving the
+ * configured grid keep evolving off screen instead of dying at the BLOCKED border, and BLOCKED cells
+ * inside the grid are treated as dead. setViewWindow moves the region getCellState shows.
+ * <p>
+ * The optional "Rule" parameter runs any other Life-like rule written as a B/S rule string, e.g.
+ * Rule:B36/S23 for HighLife or Rule:B2/S for Seeds; the default is Conway's B3/S23. The rule is
+ * compiled into a RuleTable indexed by (state, live neighbors), so every cell costs one table
+ * read. PackedLife and HashLife are hardwired to B3/S23 and only run that rule. A rule with B0
+ * brings empty space to life, so it steps every tile every step instead of skipping any.
+ * <p>
+ * When the JVM runs with --add-modules jdk.incubator.vector the cell by cell path steps whole tile
+ * rows with a Vector API StencilKernel compiled from the same table; otherwise, or with the
+ * optional "Vector" parameter set to 0, every cell is stepped by checkStability.
+ * <p>
+ * Setting the optional "Off Heap" parameter to 1 keeps the grid in memory mapped files (see
+ * MappedGrid) for grids larger than the heap. Every step then streams the grid through a window of
+ * rows top to bottom, without the bit packing or the tile skipping.
  *
  * @author ERIC XIE
  */
@@ -39,11 +72,26 @@ public class GameOfLife extends GridClass {
   private final static int ALIVE = 1;
   private final static int BLOCKED = 2; // untouchable and unchangeable cells used for the border
 
-  private Cell[][] gameGrid;
-
-  private final static int STATUS_LONELY = 1;
-  private final static int STATUS_STABLE = 2;
-  private final static int STATUS_GROWTH = 3;
+  private StateGrid gameGrid;
+  private Neighborhood neighborhood;
+  private PackedLife packedGrid; // only set when the configuration can be bit packed
+  private StencilKernel kernel; // only set when the Vector API steps the cell by cell path
+  private HashLife hashLife; // only set once the simulation has jumped ahead with HashLife
+  private byte[] hashWindow; // cells of the view window, extracted lazily after every advance
+  private long windowTop;
+  private long windowLeft;
+  private final RuleTable rules;
+  private final boolean conway; // whether the rule is B3/S23, the only one the engines know
+  private final boolean birthOnNothing; // whether the rule has B0, which wakes every tile
+  private final int rows;
+  private final int cols;
+
+  private final static String CONWAY_RULE = "B3/S23";
+  private final static int CONWAY_BIRTH = 1 << 3;
+  private final static int CONWAY_SURVIVAL = 1 << 2 | 1 << 3;
+
+  private final static String BIT_PACKING = "Bit Packing";
+  private final static String RULE = "Rule";
 
   /**
    * PURPOSE: Game of Life simulation constructor, which creates a default simulation geared for
@@ -54,7 +102,8 @@ public class GameOfLife extends GridClass {
    * assume that this constructor is never seen by the user and is called by reading the XMl file.
    * <p>
    * Exceptions: Exceptions that might be thrown would be caused by the record file where the grid
-   * is incorrectly read and passed into the simulation.
+   * is incorrectly read and passed into the simulation. Throws an XMLException when the Rule is not
+   * a B/S rule string.
    * <p>
    * A larger grid is created to make the perimeter of the grid BLOCKED cells, making the code logic
    * when checking cell neighbors easier to implement.
@@ -66,104 +115,236 @@ public class GameOfLife extends GridClass {
 
   public GameOfLife(SimulationInfo record) {
 
+    rows = record.height();
+    cols = record.width();
+    setThreadCount(getParameter(record, THREADS, 1));
+    String rule = getTextParameter(record, RULE, CONWAY_RULE);
+    int birth;
+    int survival;
+    try {
+      birth = RuleTable.countMask(rule, 'B');
+      survival = RuleTable.countMask(rule, 'S');
+      rules = RuleTable.lifeLike(birth, survival, EMPTY, ALIVE, BLOCKED);
+    } catch (IllegalArgumentException e) {
+      throw new XMLException(e.getMessage());
+    }
+    conway = birth == CONWAY_BIRTH && survival == CONWAY_SURVIVAL;
+    birthOnNothing = (birth & 1) != 0;
+    if (getParameter(record, OFF_HEAP, 0) != 0) {
+      gameGrid = initializeMappedGrid(record, BLOCKED);
+      neighborhood = getNeighborhood();
+      if (getParameter(record, VECTOR, 1) != 0) {
+        kernel = StencilKernel.totalistic(rules, new byte[]{ALIVE, ALIVE, ALIVE}, neighborhood);
+      }
+      return;
+    }
     int[][] inputData = record.initialGrid();
-    gameGrid = new Cell[inputData.length + 2][inputData[0].length + 2];
-    fillBlockedPadding(gameGrid);
-
-    for (int row = 1; row < gameGrid.length - 1; row++) {
-      for (int col = 1; col < gameGrid[0].length - 1; col++) {
-        gameGrid[row][col].setState(inputData[row - 1][col - 1]);
-        gameGrid[row][col].setNextGenState(inputData[row - 1][col - 1]);
+    if (conway && getParameter(record, BIT_PACKING, 1) != 0 && PackedLife.supports(inputData)) {
+      packedGrid = new PackedLife(inputData);
+    } else {
+      gameGrid = initializeGrid(inputData, BLOCKED, true);
+      neighborhood = getNeighborhood();
+      trackTiles();
+      if (getParameter(record, VECTOR, 1) != 0) {
+        kernel = StencilKernel.totalistic(rules, new byte[]{ALIVE, ALIVE, ALIVE}, neighborhood);
       }
     }
 
   }
 
-  // The "main", private method to call to simulate the cell interactions in a step
+  // counts the alive neighbors of a cell and looks its next generation state up in the rule table
+  // takes in the grid index of the cell being checked
 
-  private void lifeAlgo() {
+  private void checkStability(int index) {
 
-    for (int row = 1; row < gameGrid.length - 1; row++) {
-      for (int col = 1; col < gameGrid[0].length - 1; col++) {
+    byte[] current = gameGrid.current();
+    int aliveStatus = neighborhood.countMoore(current, index, ALIVE);
+    gameGrid.next()[index] = (byte) rules.next(current[index], aliveStatus);
 
-        Cell currentCell = gameGrid[row][col];
+  }
 
-        checkStability(currentCell, row, col);
+  /**
+   * PURPOSE: Method used to update the grid values or make each cell's next gen status to their new
+   * status; furthermore it runs the game of life algorithm before doing so
+   * <p>
+   * Assumptions: We assume that this method is called by the view/UI handlers to update the grid to
+   * its new generation using the next step button.
+   * <p>
+   * Exceptions: Exceptions that may be thrown would come from the lifeAlgorithm screwing up
+   * <p>
+   * No parameters
+   *
+   * @return void
+   */
+  @Override
+  public void updateGrid() {
 
+    if (hashLife != null) {
+      hashLife.advance(0);
+      hashWindow = null;
+      advanceStep();
+      return;
+    }
+    if (isOffHeap()) {
+      if (kernel != null) {
+        stepMappedRows(kernel);
+      } else {
+        stepMappedBands(this::checkStability);
+      }
+      return;
+    }
+    if (packedGrid != null) {
+      forEachBand(packedGrid.getTileRows(), packedGrid::stepTileRows);
+      if (getChangeLog() != null) {
+        packedGrid.logChanges(getChangeLog());
       }
+      packedGrid.swap();
+      advanceStep();
+      return;
+    }
+    // The "main" step: checkStability runs on every cell of the tiles that can still change
+    if (birthOnNothing) {
+      getTiles().activateAll();
+    }
+    if (kernel != null) {
+      stepActiveRows(kernel);
+    } else {
+      stepActiveTiles(this::checkStability);
     }
 
   }
 
-  // checks statuses of neighbors around it and pass an amount to another method changing its nextGenState based off that value
-  // takes in the cell being checked and its row and column
-
-  private void checkStability(Cell inputCell, int row, int col) {
+  // HashLife has no step by step past to go back to
+  @Override
+  protected boolean canRestore() {
+    return hashLife == null;
+  }
 
-    int[] cellNeighbors = inputCell.neighborStatus(gameGrid, row, col, gameGrid.length,
-        gameGrid[0].length);
-    int aliveStatus = 0;
+  // puts a cell back for RewindBuffer into whichever engine holds it
+  @Override
+  protected void restoreState(int row, int col, int state) {
 
-    for (int i = 0; i < cellNeighbors.length; i++) {
-      if (cellNeighbors[i] == ALIVE) {
-        aliveStatus++;
-      }
+    if (hashLife != null) {
+      throw new IllegalStateException("HashLife cannot step backward");
+    }
+    if (packedGrid != null) {
+      packedGrid.set(row, col, state);
+    } else {
+      super.restoreState(row, col, state);
     }
-
-    changeNextGenState(inputCell, aliveStatus);
 
   }
 
-  // handles the hard logic for determining whether a cell will be empty or alive in the next generation
-  // takes in the cell in question and the number of alive neighbors around it
-  private void changeNextGenState(Cell inputCell, int aliveNeighbors) {
+  /**
+   * @return how many tiles the next step will evaluate, or -1 once HashLife runs the simulation
+   */
+  @Override
+  public int getActiveTileCount() {
 
-    if (aliveNeighbors <= STATUS_LONELY) {
-      inputCell.setNextGenState(EMPTY);
-    } else if (aliveNeighbors == STATUS_STABLE) {
-      inputCell.setNextGenState(inputCell.getMyState());
-    } else if (aliveNeighbors == STATUS_GROWTH) {
-      inputCell.setNextGenState(ALIVE);
-    } else {
-      inputCell.setNextGenState(EMPTY);
+    if (hashLife != null) {
+      return -1;
     }
+    return packedGrid != null ? packedGrid.getActiveTileCount() : super.getActiveTileCount();
+
   }
 
-  // this method is used when creating the specific gameOfLife grid in each gameOfLife simulation
-  // it takes the newly created grid and fills the entire thing with blocked cells
-  private void fillBlockedPadding(Cell[][] gameGrid) {
-    for (int row = 0; row < gameGrid.length; row++) {
-      for (int col = 0; col < gameGrid[0].length; col++) {
+  /**
+   * Purpose: Skips 2^exponent generations ahead in one call, which is what makes very late
+   * generations of repetitive patterns reachable
+   * <p>
+   * Assumptions: The first call switches the simulation over to HashLife for good, see the class
+   * comment for how that changes the edges of the grid.
+   * <p>
+   * Exceptions: IllegalArgumentException when the exponent is negative or above
+   * HashLife.MAX_EXPONENT, or the step count would overflow; IllegalStateException when the
+   * simulation runs a rule other than B3/S23 or the pattern has spread too far for HashLife. The
+   * simulation is left unchanged in every case.
+   *
+   * @param exponent the base 2 logarithm of the number of generations to advance
+   */
+  public void advanceByPowerOfTwo(int exponent) {
 
-        gameGrid[row][col] = new Cell();
-        gameGrid[row][col].setState(BLOCKED);
+    if (!conway) {
+      throw new IllegalStateException("HashLife only runs B3/S23");
+    }
+    if (exponent < 0 || exponent > HashLife.MAX_EXPONENT) {
+      throw new IllegalArgumentException(
+          "Can only advance by 2^0 to 2^" + HashLife.MAX_EXPONENT + " generations");
+    }
+    if (getStepCount() > Long.MAX_VALUE - (1L << exponent)) {
+      throw new IllegalArgumentException("Advancing by 2^" + exponent
+          + " generations would overflow the step count");
+    }
+    if (hashLife == null) {
+      int[][] snapshot = new int[rows][cols];
+      for (int row = 0; row < rows; row++) {
+        for (int col = 0; col < cols; col++) {
+          snapshot[row][col] = getState(row, col) == ALIVE ? 1 : 0;
+        }
       }
+      hashLife = new HashLife(snapshot);
     }
+    hashLife.advance(exponent);
+    hashWindow = null;
+    advanceSteps(1L << exponent);
+
   }
 
   /**
-   * PURPOSE: Method used to update the grid values or make each cell's next gen status to their new
-   * status; furthermore it runs the game of life algorithm before doing so
-   * <p>
-   * Assumptions: We assume that this method is called by the view/UI handlers to update the grid to
-   * its new generation using the next step button.
-   * <p>
-   * Exceptions: Exceptions that may be thrown would come from the lifeAlgorithm screwing up
-   * <p>
-   * No parameters
+   * Purpose: Moves the region of the unbounded HashLife plane that getCellState reads. The window
+   * keeps the size of the configured grid and starts out at (0, 0), right on top of it.
    *
-   * @return void
+   * @param top  plane row shown as row 0
+   * @param left plane column shown as column 0
+   */
+  public void setViewWindow(long top, long left) {
+
+    windowTop = top;
+    windowLeft = left;
+    hashWindow = null;
+
+  }
+
+  /**
+   * Purpose: Reads a cell from whichever engine runs the simulation. Once HashLife runs it, the
+   * cells are those of the view window, which is all a checkpoint keeps of the unbounded plane.
+   *
+   * @param row the row of the cell
+   * @param col the column of the cell
+   * @return the current state of the cell
    */
   @Override
-  public void updateGrid() {
+  public int getState(int row, int col) {
 
-    lifeAlgo();
-    for (int row = 1; row < gameGrid.length - 1; row++) {
-      for (int col = 1; col < gameGrid[0].length - 1; col++) {
-        gameGrid[row][col].setState(gameGrid[row][col].getNextGenState());
+    if (hashLife != null) {
+      if (hashWindow == null) {
+        hashWindow = hashLife.window(windowTop, windowLeft, rows, cols);
       }
+      return hashWindow[row * cols + col];
     }
+    return packedGrid != null ? packedGrid.get(row, col) : super.getState(row, col);
 
+  }
+
+  /**
+   * Purpose: Copies every cell like GridClass does, going through getState while the packed or
+   * HashLife engine holds the cells instead of the StateGrid
+   *
+   * @param cells at least rows * cols bytes
+   */
+  @Override
+  public void copyStates(byte[] cells) {
+
+    if (hashLife == null && packedGrid == null) {
+      super.copyStates(cells);
+      return;
+    }
+    checkFits(cells, rows, cols);
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        cells[row * cols + col] = (byte) getState(row, col);
+      }
+    }
 
   }
 
@@ -189,9 +370,10 @@ public class GameOfLife extends GridClass {
   @Override
   public String getCellState(int row, int col, boolean intValue) {
 
-    if (gameGrid[row + 1][col + 1].getMyState() == 0) {
+    int state = getState(row, col);
+    if (state == 0) {
       return intValue ? "0" : "EMPTY";
-    } else if (gameGrid[row + 1][col + 1].getMyState() == 1) {
+    } else if (state == 1) {
       return intValue ? "1" : "ALIVE";
     } else {
       return intValue ? "2" : "BLOCKED";
@@ -1,11 +1,57 @@
 package cellsociety.model;
 
+import cellsociety.model.engine.ParallelStepper;
+import cellsociety.model.engine.StencilKernel;
+import cellsociety.model.unit.ChangeLog;
+import cellsociety.model.unit.CounterRandom;
+import cellsociety.model.unit.MappedGrid;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.StateGrid;
+import cellsociety.model.unit.TileTracker;
+import cellsociety.view.SimulationInfo;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntConsumer;
+
 public abstract class GridClass {
 
-  // private int myWidth;
-  // private int myHeight;
-  // private int myGrowthSpeed;
-  // private Cell[][] myGrid;
+  // optional XML parameter choosing how many threads step the grid
+  protected static final String THREADS = "Threads";
+  // optional XML parameter making the random draws of a stochastic simulation reproducible
+  protected static final String SEED = "Seed";
+  // optional XML parameter, 0 makes a front driven simulation scan the whole grid every step
+  protected static final String FRONTIER = "Frontier";
+  // optional XML parameter, 0 keeps a simulation on its cell by cell path even when the Vector API
+  // is available
+  protected static final String VECTOR = "Vector";
+  // optional XML parameter, 1 keeps the grid in memory mapped files instead of on the heap
+  protected static final String OFF_HEAP = "Off Heap";
+
+  // bytes of one band window of an off heap grid
+  private static final int BAND_BYTES = 1 << 24;
+
+  // shared flat state storage, see StateGrid
+  private StateGrid myGrid;
+  private Neighborhood myNeighborhood;
+  private TileTracker myTiles;
+  private MappedGrid myMappedGrid; // null unless the grid lives off heap
+  private int myRowOffset; // first grid row of the band window being stepped
+  private ParallelStepper myStepper; // null while stepping on the calling thread
+  private CounterRandom myRandom = new CounterRandom(System.nanoTime());
+  private long myStep;
+  private ChangeLog myChangeLog; // null unless a RewindBuffer follows the steps
+  // while a parallel step logs, each band logs into a log of its own, found through the thread
+  // stepping it and added to myChangeLog in band order once every band is done
+  private final ThreadLocal<ChangeLog> myBandLog = new ThreadLocal<>();
+  private final Map<Integer, ChangeLog> myBandLogs = new ConcurrentSkipListMap<>();
+  private final Queue<ChangeLog> mySpareLogs = new ConcurrentLinkedQueue<>();
 
 
   public GridClass(){
@@ -13,6 +59,458 @@ public abstract class GridClass {
 
   }
 
+  // creates the shared state storage for a simulation from its initial configuration, padding it
+  // with a border of the given state
+  protected StateGrid initializeGrid(int[][] inputData, int borderState, boolean doubleBuffered) {
+    myGrid = new StateGrid(inputData, borderState, doubleBuffered);
+    myNeighborhood = new Neighborhood(myGrid);
+    return myGrid;
+  }
+
+  // keeps the whole grid in memory mapped files and returns the window StateGrid the bands of rows
+  // are stepped in, so cell rules written against current() and next() work unchanged. The initial
+  // grid is copied in one row of the record's initialRows at a time, top row first, so it never has
+  // to be on the heap as a whole.
+  protected StateGrid initializeMappedGrid(SimulationInfo record, int borderState) {
+    int rows = record.height();
+    int cols = record.width();
+    myMappedGrid = new MappedGrid(rows, cols, borderState);
+    for (int row = 0; row < rows; row++) {
+      myMappedGrid.setRow(row, record.initialRows().apply(row));
+    }
+    int bandRows = Math.max(1, Math.min(rows, BAND_BYTES / (cols + 2)));
+    myGrid = new StateGrid(bandRows, cols, borderState, true);
+    myNeighborhood = new Neighborhood(myGrid);
+    return myGrid;
+  }
+
+  // gives subclasses access to the shared state storage
+  protected StateGrid getGrid() {
+    return myGrid;
+  }
+
+  // gives subclasses the precomputed, allocation free neighbor access for their grid
+  protected Neighborhood getNeighborhood() {
+    return myNeighborhood;
+  }
+
+  // turns on dirty tile tracking for the grid, so stepActiveTiles can skip settled regions
+  protected void trackTiles() {
+    myTiles = new TileTracker(myGrid.getRows(), myGrid.getCols(), TileTracker.DEFAULT_TILE_SIZE,
+        TileTracker.DEFAULT_TILE_SIZE);
+  }
+
+  // the tiles of trackTiles, for simulations that walk the active tiles themselves
+  protected TileTracker getTiles() {
+    return myTiles;
+  }
+
+  // runs a deterministic rule over every cell of the tiles that can change this step, then swaps the
+  // buffers and works out which tiles can change next step. The rule reads current() and writes the
+  // next state of the cell at the given index into next().
+  protected void stepActiveTiles(IntConsumer cellRule) {
+    stepActiveRows(eachCell(cellRule));
+  }
+
+  // steps an off heap grid one band of rows at a time: each band is read into the window, every
+  // cell of it is stepped, on several threads if asked, and its next generation is written back
+  protected void stepMappedBands(IntConsumer cellRule) {
+    stepMappedRows(eachCell(cellRule));
+  }
+
+  // like stepMappedBands, handing the kernel whole rows of the band
+  protected void stepMappedRows(StencilKernel kernel) {
+    byte[] current = myGrid.current();
+    byte[] next = myGrid.next();
+    int rows = myMappedGrid.getRows();
+    for (int firstRow = 0; firstRow < rows; firstRow += myGrid.getRows()) {
+      int count = Math.min(myGrid.getRows(), rows - firstRow);
+      myMappedGrid.readBand(firstRow, count, current);
+      myRowOffset = firstRow;
+      forEachBand(count, (fromRow, toRow) -> {
+        for (int row = fromRow; row < toRow; row++) {
+          int from = myGrid.index(row, 0);
+          kernel.stepRow(current, next, from, from + myGrid.getCols());
+        }
+      });
+      myMappedGrid.writeBand(firstRow, count, next);
+    }
+    myRowOffset = 0;
+    myMappedGrid.swap();
+    myStep++;
+  }
+
+  // whether initializeMappedGrid put the grid off heap
+  protected boolean isOffHeap() {
+    return myMappedGrid != null;
+  }
+
+  /**
+   * Purpose: Reads the raw state of a cell, the number getCellState(row, col, true) spells out,
+   * from wherever the simulation keeps it (the shared StateGrid or its off heap mapping)
+   *
+   * @param row the row of the cell
+   * @param col the column of the cell
+   * @return the current state of the cell
+   */
+  public int getState(int row, int col) {
+    return myMappedGrid != null ? myMappedGrid.getState(row, col) : myGrid.getState(row, col);
+  }
+
+  /**
+   * Purpose: Copies the current state of every cell into one byte per cell, row after row, a row at
+   * a time instead of a getState call per cell, e.g. for recording frames of a long run
+   *
+   * <p>
+   * Exceptions: IllegalArgumentException when the grid has more cells than the array, e.g. an off
+   * heap grid of more than 2^31 cells, which no byte[] can hold
+   *
+   * @param cells at least rows * cols bytes, cell (row, col) ends up at row * cols + col
+   */
+  public void copyStates(byte[] cells) {
+    int rows = myMappedGrid != null ? myMappedGrid.getRows() : myGrid.getRows();
+    int cols = myGrid.getCols();
+    checkFits(cells, rows, cols);
+    for (int row = 0; row < rows; row++) {
+      if (myMappedGrid != null) {
+        myMappedGrid.readRow(row, cells, row * cols);
+      } else {
+        System.arraycopy(myGrid.current(), myGrid.index(row, 0), cells, row * cols, cols);
+      }
+    }
+  }
+
+  // throws unless rows * cols cells fit in the array, so row * cols + col cannot overflow
+  protected static void checkFits(byte[] cells, int rows, int cols) {
+    if ((long) rows * cols > cells.length) {
+      throw new IllegalArgumentException(
+          "A grid of " + rows + " x " + cols + " cells does not fit in " + cells.length + " bytes");
+    }
+  }
+
+  // a kernel running a cell rule on every cell of its row
+  private static StencilKernel eachCell(IntConsumer cellRule) {
+    return (current, next, from, to) -> {
+      for (int index = from; index < to; index++) {
+        cellRule.accept(index);
+      }
+    };
+  }
+
+  // like stepActiveTiles, but hands the kernel each row of an active tile as one run of cells so
+  // it can step many of them at once
+  protected void stepActiveRows(StencilKernel kernel) {
+    byte[] current = myGrid.current();
+    byte[] next = myGrid.next();
+    forEachBand(myTiles.getTileRows(), (fromTileRow, toTileRow) -> {
+      for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) {
+        for (int tileCol = 0; tileCol < myTiles.getTileCols(); tileCol++) {
+          if (myTiles.isActive(tileRow, tileCol)) {
+            stepTile(tileRow, tileCol, kernel, current, next);
+          }
+        }
+      }
+    });
+    myGrid.swap();
+    myTiles.advance();
+    myStep++;
+  }
+
+  // runs a rule over every cell of the grid and swaps the buffers, for rules that cannot skip
+  // tiles. The rule reads current() and writes the next state of the cell at the index into next().
+  protected void stepAllCells(IntConsumer cellRule) {
+    forEachBand(myGrid.getRows(), (fromRow, toRow) -> {
+      for (int row = fromRow; row < toRow; row++) {
+        int rowStart = myGrid.index(row, 0);
+        for (int col = 0; col < myGrid.getCols(); col++) {
+          cellRule.accept(rowStart + col);
+        }
+        if (myChangeLog != null) {
+          logRow(myGrid.current(), myGrid.next(), rowStart, rowStart + myGrid.getCols());
+        }
+      }
+    });
+    myGrid.swap();
+    myStep++;
+  }
+
+  // splits [0, size) into bands of rows and steps them, in parallel once setThreadCount asked for
+  // more than one thread
+  protected void forEachBand(int size, ParallelStepper.Band band) {
+    if (myStepper == null) {
+      band.step(0, size);
+    } else if (myChangeLog == null) {
+      myStepper.forEachBand(size, band);
+    } else {
+      myStepper.forEachBand(size, (from, to) -> {
+        ChangeLog log = mySpareLogs.poll();
+        log = log != null ? log : new ChangeLog();
+        myBandLog.set(log);
+        try {
+          band.step(from, to);
+        } finally {
+          myBandLog.remove();
+          myBandLogs.put(from, log);
+        }
+      });
+      mergeBandLogs();
+    }
+  }
+
+  // bands only write cells of their own, so no cell is in two band logs and adding them in band
+  // order gives the log a single thread would have written
+  private void mergeBandLogs() {
+    for (ChangeLog log : myBandLogs.values()) {
+      myChangeLog.addAll(log);
+      log.clear();
+      mySpareLogs.add(log);
+    }
+    myBandLogs.clear();
+  }
+
+  // the log the calling thread reports in: its band's during a parallel step, else the step's
+  private ChangeLog activeLog() {
+    ChangeLog log = myStepper == null ? null : myBandLog.get();
+    return log != null ? log : myChangeLog;
+  }
+
+  /**
+   * Purpose: Chooses how many threads compute each step. Every band of the grid is computed from
+   * the current generation alone, so deterministic rules give the exact same results for any
+   * thread count.
+   *
+   * @param threads number of threads, 1 or less steps on the calling thread
+   */
+  public void setThreadCount(int threads) {
+    myStepper = threads > 1 ? ParallelStepper.forThreads(threads) : null;
+  }
+
+  /**
+   * @return the number of threads computing each step
+   */
+  public int getThreadCount() {
+    return myStepper == null ? 1 : myStepper.getThreads();
+  }
+
+  // runs the kernel over the rows of one tile and marks it if any of its cells changed
+  private void stepTile(int tileRow, int tileCol, StencilKernel kernel, byte[] current,
+      byte[] next) {
+    boolean changed = false;
+    int width = myTiles.endCol(tileCol) - myTiles.firstCol(tileCol);
+    for (int row = myTiles.firstRow(tileRow); row < myTiles.endRow(tileRow); row++) {
+      int from = myGrid.index(row, myTiles.firstCol(tileCol));
+      kernel.stepRow(current, next, from, from + width);
+      if (myChangeLog != null) {
+        changed |= logRow(current, next, from, from + width);
+      } else {
+        changed = changed || Arrays.mismatch(current, from, from + width, next, from,
+            from + width) >= 0;
+      }
+    }
+    if (changed) {
+      myTiles.markChanged(tileRow, tileCol);
+    }
+  }
+
+  /**
+   * @return how many tiles the next step will evaluate, or -1 when the simulation steps every cell
+   */
+  public int getActiveTileCount() {
+    return myTiles == null ? -1 : myTiles.getActiveTileCount();
+  }
+
+  // reads the optional Seed parameter; without it every run draws differently, like Math.random did
+  protected void initializeRandom(SimulationInfo record) {
+    if (record.possibleParameters() != null && record.possibleParameters().containsKey(SEED)) {
+      setSeed(record.possibleParameters().get(SEED));
+    }
+  }
+
+  // a uniform double in [0, 1) that only depends on the seed, the step count, the cell and the
+  // stream, so it is the same whichever thread or tile order computes the cell. Rows of an off heap
+  // band window are keyed by their row in the whole grid.
+  protected double randomDouble(int row, int col, int stream) {
+    return myRandom.nextDouble(myStep, row + myRowOffset, col, stream);
+  }
+
+  // a uniform int in [0, bound) keyed the same way as randomDouble
+  protected int randomInt(int row, int col, int stream, int bound) {
+    return myRandom.nextInt(myStep, row + myRowOffset, col, stream, bound);
+  }
+
+  // counts a finished step for simulations that do not step through stepActiveTiles/stepAllCells
+  protected void advanceStep() {
+    myStep++;
+  }
+
+  // counts several finished steps at once, for simulations that can jump ahead
+  protected void advanceSteps(long steps) {
+    myStep += steps;
+  }
+
+  /**
+   * @return the number of steps taken since the simulation was created
+   */
+  public long getStepCount() {
+    return myStep;
+  }
+
+  /**
+   * @return the seed of the simulation's random draws, to replay a run through the Seed parameter
+   */
+  public long getSeed() {
+    return myRandom.getSeed();
+  }
+
+  /**
+   * Purpose: Reseeds the random draws, the same seed replays the same run from the same grid
+   *
+   * @param seed the new seed
+   */
+  public void setSeed(long seed) {
+    myRandom = new CounterRandom(seed);
+  }
+
+  /**
+   * Purpose: Writes what a checkpoint needs on top of the cell states and the parameters: the step
+   * count, the seed (with counter based draws the step count is the position of the generator) and
+   * whatever the simulation keeps next to its grid, see writeExtraState
+   * <p>
+   * Exceptions: IOException from the output
+   *
+   * @param out where the checkpoint is being written
+   */
+  public void writeEngineState(DataOutput out) throws IOException {
+    out.writeLong(myStep);
+    out.writeLong(getSeed());
+    writeExtraState(out);
+  }
+
+  /**
+   * Purpose: Restores what writeEngineState wrote, on a simulation freshly created from the same
+   * record and checkpointed cell states, so it carries on exactly like the one that was saved
+   * <p>
+   * Exceptions: IOException from the input, e.g. when the checkpoint is cut short
+   *
+   * @param in where the checkpoint is being read
+   */
+  public void readEngineState(DataInput in) throws IOException {
+    myStep = in.readLong();
+    setSeed(in.readLong());
+    readExtraState(in);
+  }
+
+  // RewindBuffer hands the simulation the log to report its changes in, null to stop reporting
+  void setChangeLog(ChangeLog log) {
+    myChangeLog = log;
+  }
+
+  // the log a RewindBuffer wants this step's changes in, or null when nothing is following the
+  // steps, so simulations can skip working out what to log
+  protected ChangeLog getChangeLog() {
+    return myChangeLog;
+  }
+
+  // reports that a step is about to change the cell at the grid index from the given state, for
+  // simulations writing cells outside of stepActiveTiles/stepAllCells
+  protected void logChange(int index, int before) {
+    if (myChangeLog != null) {
+      activeLog().add(myGrid.rowOf(index), myGrid.colOf(index), before);
+    }
+  }
+
+  // reports a number the simulation needs to undo what it keeps besides its cells, see undoExtra
+  protected void logExtra(int value) {
+    if (myChangeLog != null) {
+      activeLog().addExtra(value);
+    }
+  }
+
+  // logs every cell of a run whose next state differs from its current one, returning whether
+  // there was any
+  private boolean logRow(byte[] current, byte[] next, int from, int to) {
+    boolean changed = false;
+    ChangeLog log = activeLog();
+    int index = Arrays.mismatch(current, from, to, next, from, to);
+    while (index >= 0) {
+      index += from;
+      log.add(myGrid.rowOf(index), myGrid.colOf(index), current[index]);
+      changed = true;
+      from = index + 1;
+      index = Arrays.mismatch(current, from, to, next, from, to);
+    }
+    return changed;
+  }
+
+  // whether restoreState can still put cells back; false once a simulation has moved to an engine
+  // with no step by step past, so RewindBuffer rebuilds nothing rather than failing half way
+  protected boolean canRestore() {
+    return true;
+  }
+
+  // writes a cell outside of a step into both generations and wakes the tiles around it, for
+  // RewindBuffer to put back the cells a step changed
+  protected void restoreState(int row, int col, int state) {
+    if (myMappedGrid != null) {
+      myMappedGrid.setState(row, col, state);
+      return;
+    }
+    myGrid.setState(row, col, state);
+    if (myTiles != null) {
+      myTiles.wake(row, col);
+    }
+  }
+
+  // called once RewindBuffer has put back the cells of an earlier step, with that step's count;
+  // simulations rebuild here what they derive from their cells, like a fire front
+  protected void cellsRestored(long step) {
+    myStep = step;
+  }
+
+  // undoes what the simulation logged with logExtra during the steps being undone, after
+  // RewindBuffer has put their cells back and before cellsRestored. The values come oldest first
+  // and are undone from the end back, so the oldest ones are put back last.
+  protected void undoExtra(int[] values) {
+  }
+
+  // writes the state a simulation keeps besides its cells and cannot rebuild from them, e.g. the
+  // ages of Wa-Tor's creatures; simulations that keep nothing else write nothing
+  protected void writeExtraState(DataOutput out) throws IOException {
+  }
+
+  // reads back what writeExtraState wrote, after the constructor built the simulation
+  protected void readExtraState(DataInput in) throws IOException {
+  }
+
+  // writes the first count values of an array in one go, for per agent extras
+  protected static void writeInts(DataOutput out, int[] values, int count) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(count * Integer.BYTES);
+    bytes.asIntBuffer().put(values, 0, count);
+    out.write(bytes.array());
+  }
+
+  // reads what writeInts wrote into the first count slots of an array
+  protected static void readInts(DataInput in, int[] values, int count) throws IOException {
+    byte[] bytes = new byte[count * Integer.BYTES];
+    in.readFully(bytes);
+    ByteBuffer.wrap(bytes).asIntBuffer().get(values, 0, count);
+  }
+
+  // reads an optional integer parameter from the XML percentageParameters, falling back to the
+  // given default when the file does not set it
+  protected int getParameter(SimulationInfo record, String name, int defaultValue) {
+    if (record.possibleParameters() == null) {
+      return defaultValue;
+    }
+    return record.possibleParameters().getOrDefault(name, defaultValue);
+  }
+
+  // reads an optional text parameter, e.g. a rule string, falling back to the given default when
+  // the file does not set it
+  protected String getTextParameter(SimulationInfo record, String name, String defaultValue) {
+    return record.textParameters().getOrDefault(name, defaultValue);
+  }
+
   public abstract String getCellState(int row, int col, boolean intValue);
 
 
@@ -1,11 +0,0 @@
-package cellsociety.model;
-
-public class Pairs {
-    int x;
-    int y;
-
-    public Pairs(int x, int y) {
-        this.x = x;
-        this.y = y;
-    }
-}
@@ -0,0 +1,191 @@
+package cellsociety.model;
+
+import cellsociety.model.unit.ChangeLog;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * RewindBuffer class
+ * <p>
+ * Purpose: Lets the view step a simulation backward. After every step it keeps the cells that
+ * changed together with the states they had before, so undoing a step only writes those cells back
+ * instead of rebuilding the whole grid. Reset undoes every step kept, so a simulation goes back to
+ * where it started without running its constructor again.
+ * <p>
+ * Assumptions: The simulation only moves through record after each of its steps, stepBack and
+ * reset; cells written any other way are not undone. Every cell state fits in a byte. A simulation
+ * whose canRestore turns false can neither step back nor reset through the buffer, and one kept
+ * off heap cannot be followed at all (see supports).
+ * <p>
+ * Dependencies: A ChangeLog the simulation reports its changes in while it steps (GridClass logs
+ * the cells stepActiveTiles and stepAllCells change, the other simulations log their own writes),
+ * restoreState and cellsRestored to put cells back, and logExtra/undoExtra for what a simulation
+ * keeps besides its cells (e.g. the ages and energies of Wa-Tor's creatures).
+ * <p>
+ * Example: GridView records after every next(), its Previous button calls stepBack() and its Reset
+ * button calls reset()
+ * <p>
+ * Misc: The undo steps are kept in a ring buffer of at most the given number of megabytes; once it
+ * is full the oldest steps are dropped, so only the most recent steps can be undone and reset has
+ * to leave rebuilding the simulation to the caller. Recording and undoing a step both cost as much
+ * as the step changed: the simulations log the cells they write and the numbers their other state
+ * needs to go back, and move their indexes and fronts per restored cell in restoreState and
+ * cellsRestored. Nothing is kept per cell of the grid.
+ *
+ * @author ERIC XIE
+ */
+
+public class RewindBuffer {
+
+  private static final int BYTES_PER_MEGABYTE = 1 << 20;
+  // bookkeeping of one undo step besides its arrays
+  private static final int STEP_OVERHEAD = 64;
+
+  // the cells a step changed with the states they had before it, and what the simulation logged
+  // to undo the rest of its state
+  private record UndoStep(long step, int[] rows, int[] cols, byte[] states, int[] extras) {
+
+    long bytes() {
+      return STEP_OVERHEAD + rows.length * (2L * Integer.BYTES + 1)
+          + (long) extras.length * Integer.BYTES;
+    }
+  }
+
+  private final GridClass myModel;
+  private final long myBudget;
+  private final Deque<UndoStep> mySteps = new ArrayDeque<>();
+  private final ChangeLog myLog = new ChangeLog();
+  private long myBytes;
+  private long myStep;
+  private boolean myDropped; // whether steps were dropped, so reset cannot reach the start
+  private UndoStep myLast; // the step the last record or stepBack went through, null after reset
+
+  /**
+   * @param model a simulation
+   * @return whether a RewindBuffer can follow it; the changes of an off heap grid are not logged
+   */
+  public static boolean supports(GridClass model) {
+    return !model.isOffHeap();
+  }
+
+  /**
+   * Purpose: Starts following the simulation from its current state, the state reset goes back to
+   * <p>
+   * Exceptions: IllegalArgumentException when the simulation is not supported
+   *
+   * @param model     the simulation to rewind
+   * @param megabytes most memory the undo steps may take up
+   */
+  public RewindBuffer(GridClass model, int megabytes) {
+    if (!supports(model)) {
+      throw new IllegalArgumentException("Simulations kept off heap cannot be rewound");
+    }
+    myModel = model;
+    myBudget = (long) megabytes * BYTES_PER_MEGABYTE;
+    myStep = model.getStepCount();
+    model.setChangeLog(myLog);
+  }
+
+  /**
+   * Purpose: Keeps what the step the simulation just took changed, dropping the oldest steps when
+   * the buffer is over its budget
+   */
+  public void record() {
+    int count = 0;
+    int[] rows = new int[myLog.size()];
+    int[] cols = new int[myLog.size()];
+    byte[] states = new byte[myLog.size()];
+    for (int change = 0; change < myLog.size(); change++) {
+      // a cell changed and changed back within the step has nothing to undo
+      if (myModel.getState(myLog.row(change), myLog.col(change)) != myLog.before(change)) {
+        rows[count] = myLog.row(change);
+        cols[count] = myLog.col(change);
+        states[count++] = (byte) myLog.before(change);
+      }
+    }
+    UndoStep step = new UndoStep(myStep, Arrays.copyOf(rows, count), Arrays.copyOf(cols, count),
+        Arrays.copyOf(states, count), myLog.extras());
+    myLog.clear();
+    myLast = step;
+    mySteps.addLast(step);
+    myBytes += step.bytes();
+    while (myBytes > myBudget && !mySteps.isEmpty()) {
+      myBytes -= mySteps.removeFirst().bytes();
+      myDropped = true;
+    }
+    myStep = myModel.getStepCount();
+  }
+
+  /**
+   * Purpose: Undoes the most recent step still in the buffer
+   *
+   * @return false when there is no step left to undo or the simulation can no longer be restored
+   */
+  public boolean stepBack() {
+    if (mySteps.isEmpty() || !myModel.canRestore()) {
+      return false;
+    }
+    UndoStep step = mySteps.removeLast();
+    myBytes -= step.bytes();
+    restore(step);
+    myLast = step;
+    return true;
+  }
+
+  /**
+   * Purpose: Puts the simulation back to the state it was in when the buffer was created by undoing
+   * every step since
+   *
+   * @return false, leaving the simulation as it is, when it can no longer be restored (e.g. once
+   * GameOfLife has jumped ahead with HashLife) or the oldest steps were dropped; the caller has to
+   * build it again instead
+   */
+  public boolean reset() {
+    if (myDropped || !myModel.canRestore()) {
+      return false;
+    }
+    while (!mySteps.isEmpty()) {
+      restore(mySteps.removeLast());
+    }
+    myBytes = 0;
+    myLast = null;
+    return true;
+  }
+
+  /**
+   * @return the rows of the cells the last record() or stepBack() changed, lined up with
+   * getLastCols(), or null before the first record() and after reset(); e.g. for a HistoryRecorder
+   * to take only those cells
+   */
+  public int[] getLastRows() {
+    return myLast == null ? null : myLast.rows();
+  }
+
+  /**
+   * @return the columns of the cells the last record() or stepBack() changed, see getLastRows()
+   */
+  public int[] getLastCols() {
+    return myLast == null ? null : myLast.cols();
+  }
+
+  /**
+   * @return how many steps can currently be undone
+   */
+  public int getStepsBack() {
+    return mySteps.size();
+  }
+
+  // writes the cells of an undo step back and hands the simulation its step count and what it
+  // logged to undo the rest of its state
+  private void restore(UndoStep step) {
+    for (int i = 0; i < step.rows().length; i++) {
+      myModel.restoreState(step.rows()[i], step.cols()[i], step.states()[i]);
+    }
+    myModel.undoExtra(step.extras());
+    myModel.cellsRestored(step.step());
+    myLog.clear();
+    myStep = step.step();
+  }
+
+}
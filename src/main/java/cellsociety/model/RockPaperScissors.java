@@ -1,10 +1,11 @@
 package cellsociety.model;
 
 import cellsociety.XMLException;
-import cellsociety.model.unit.Cell;
+import cellsociety.model.engine.StencilKernel;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.RuleTable;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
-import cellsociety.XMLException;
-import java.util.HashMap;
 
 /**
  * Rock Paper Scissors simulation class
@@ -20,8 +21,8 @@ import java.util.HashMap;
  * <p>
  * Dependencies: This depends on all the imported javafx lines contained in the cellsociety.model
  * package. Furthermore, it imports the cellsociety.view.SimulationInfo record, which contains the
- * necessary info to create the simulation. It also imports HashMap to hold the various interactions
- * between rock, paper, and scissors.This also imports the cellsociety model Cell unit.
+ * necessary info to create the simulation. It also imports the RuleTable unit the interactions
+ * between rock, paper, and scissors are compiled into.
  * <p>
  * Examples: One example of how to use is to create an XML file following the examples provided in
  * the resources file labeled with csPercolation. The labels for cells range from 0 to 3 with them
@@ -34,6 +35,17 @@ import java.util.HashMap;
  * Misc: The VOID cell type isn't really used in this program and is more for making the logic of
  * cell society easier to implement. Essentially, it's an unseen block type that loops around the
  * outside of the grid, making cell status checking on the edges far easier.
+ * <p>
+ * Steps only evaluate the tiles of the grid that changed last step or border a tile that did, so
+ * regions that have settled into one color stop costing anything.
+ * <p>
+ * The optional "Species" parameter plays the cyclic game with more than three species: species
+ * s + 1 beats species s and species 0 beats the last one, and the border becomes the state right
+ * after the last species. Species 3 and up are shown as SPECIES3, SPECIES4 and so on. Who beats
+ * whom and when a cell is taken over is compiled into a hunter array and a RuleTable, so a cell
+ * costs one count of its hunters and one table read. When the JVM runs with --add-modules
+ * jdk.incubator.vector those tables are also compiled into a Vector API StencilKernel that steps
+ * whole tile rows at once, unless the optional "Vector" parameter is 0.
  *
  * @author ERIC XIE
  */
@@ -44,14 +56,21 @@ public class RockPaperScissors extends GridClass {
   // its 8 neighbors around it. (moore neighbors)
 
   private int threshold = 2; // to be replaced by input value later
-  private Cell[][] rpsGrid;
+  private StateGrid rpsGrid;
+  private Neighborhood neighborhood;
 
   private final static int ROCK = 0;
   private final static int PAPER = 1;
   private final static int SCISSORS = 2;
-  private final static int VOID = 3; // untouchable and unchangeable cells used for the border
+  private final static int MAX_SPECIES = 10;
 
-  private HashMap interactions;
+  private final static String SPECIES = "Species";
+
+  private final int species;
+  private final int voidState; // untouchable and unchangeable cells used for the border
+  private final byte[] hunters; // hunters[s] is the species that beats species s
+  private final RuleTable rules;
+  private StencilKernel kernel; // only set when the Vector API steps the grid
 
   /**
    * Purpose: This is a RockPaperScissors constructor, which is used to create Rock Paper Scissors
@@ -63,7 +82,7 @@ public class RockPaperScissors extends GridClass {
    * <p>
    * Exceptions: Exceptions that might be thrown would be caused by when the required parameter of a
    * threshold to calculate wins for the cells is not provided. This throws and catches the Null
-   * Pointer Exception.
+   * Pointer Exception. An XMLException is also thrown when Species is below 2 or above 10.
    * <p>
    * Similar to GameOfLife, creates a padded grid with void cells that line the perimeter for ease
    * of neighbor status checking
@@ -75,83 +94,49 @@ public class RockPaperScissors extends GridClass {
 
   public RockPaperScissors(SimulationInfo record) {
 
-    int[][] inputData = record.initialGrid();
-    rpsGrid = new Cell[inputData.length + 2][inputData[0].length + 2];
-    fillVoidPadding(rpsGrid);
-
-    for (int row = 1; row < rpsGrid.length - 1; row++) {
-      for (int col = 1; col < rpsGrid[0].length - 1; col++) {
-        rpsGrid[row][col].setState(inputData[row - 1][col - 1]);
-        rpsGrid[row][col].setNextGenState(inputData[row - 1][col - 1]);
-      }
+    species = getParameter(record, SPECIES, SCISSORS + 1);
+    if (species < 2 || species > MAX_SPECIES) {
+      throw new XMLException("Species must be between 2 and " + MAX_SPECIES);
     }
-
-    // HashMap of interactions
-    interactions = new HashMap<Integer, Integer>();
-    interactions.put(ROCK, PAPER);
-    interactions.put(PAPER, SCISSORS);
-    interactions.put(SCISSORS, ROCK);
+    voidState = species;
+    rpsGrid = initializeGrid(record.initialGrid(), voidState, true);
+    neighborhood = getNeighborhood();
+    trackTiles();
+    setThreadCount(getParameter(record, THREADS, 1));
+
+    // array of interactions, the border is hunted by a state no cell has
+    hunters = new byte[species + 1];
+    for (int state = 0; state < species; state++) {
+      hunters[state] = (byte) ((state + 1) % species);
+    }
+    hunters[voidState] = -1;
 
     try {
       threshold = record.possibleParameters().get("Threshold Value");
     } catch (NullPointerException e) {
       throw new XMLException("Required parameter not given");
     }
-
-    for (int row = 0; row < rpsGrid.length; row++) {
-      for (int col = 0; col < rpsGrid[0].length; col++) {
-
-        System.out.print(rpsGrid[row][col].getMyState() + ", ");
-
-      }
-      System.out.println();
+    rules = RuleTable.cyclic(species, threshold);
+    if (getParameter(record, VECTOR, 1) != 0) {
+      kernel = StencilKernel.totalistic(rules, hunters, neighborhood);
     }
 
   }
 
-  // main algorithm method for cells playing rock paper scissors w the cells around it
-  private void rpsAlgo() {
-
-    for (int row = 1; row < rpsGrid.length - 1; row++) {
-      for (int col = 1; col < rpsGrid[0].length - 1; col++) {
-
-        Cell currentCell = rpsGrid[row][col];
+  // main algorithm method for a cell playing rock paper scissors w the cells around it, run by
+  // stepActiveTiles on the regions that are still fighting
+  private void rpsAlgo(int index) {
 
-        if (checkRPSStatus(currentCell, row, col) > threshold) {
-          currentCell.setNextGenState((int) interactions.get(currentCell.getMyState()));
-        }
-
-      }
-    }
+    byte[] current = rpsGrid.current();
+    rpsGrid.next()[index] = (byte) rules.next(current[index], checkRPSStatus(index));
   }
 
   // checks the neighbor cells for what they played and counts up the total of cells that beat the
   // current cell
-  private int checkRPSStatus(Cell currentCell, int row, int col) {
-
-    int[] neighborData = currentCell.neighborStatus(rpsGrid, row, col, rpsGrid.length,
-        rpsGrid[0].length);
-    int beatenTotal = 0;
-
-    for (int i = 0; i < neighborData.length; i++) {
-      if (neighborData[i] == (int) interactions.get(currentCell.getMyState())) {
-        beatenTotal++;
-      }
-    }
-
-    return beatenTotal;
-  }
-
-  // this method is used when creating the specific grid in each RPS simulation
-  // it takes the newly created grid and fills the entire thing with void cells
+  private int checkRPSStatus(int index) {
 
-  private void fillVoidPadding(Cell[][] inputGrid) {
-    for (int row = 0; row < inputGrid.length; row++) {
-      for (int col = 0; col < inputGrid[0].length; col++) {
-        inputGrid[row][col] = new Cell();
-        inputGrid[row][col].setState(VOID);
-      }
-    }
+    byte[] current = rpsGrid.current();
+    return neighborhood.countMoore(current, index, hunters[current[index]]);
   }
 
   /**
@@ -176,14 +161,17 @@ public class RockPaperScissors extends GridClass {
   @Override
   public String getCellState(int row, int col, boolean intValue) {
 
-    if (rpsGrid[row + 1][col + 1].getMyState() == ROCK) {
+    int state = rpsGrid.getState(row, col);
+    if (state == ROCK) {
       return intValue ? "" + ROCK : "ROCK";
-    } else if (rpsGrid[row + 1][col + 1].getMyState() == PAPER) {
+    } else if (state == PAPER) {
       return intValue ? "" + PAPER : "PAPER";
-    } else if (rpsGrid[row + 1][col + 1].getMyState() == SCISSORS) {
+    } else if (state == SCISSORS && species > SCISSORS) {
       return intValue ? "" + SCISSORS : "SCISSORS";
+    } else if (state < species) {
+      return intValue ? "" + state : "SPECIES" + state;
     } else {
-      return intValue ? "" + VOID : "EMPTY";
+      return intValue ? "" + voidState : "EMPTY";
     }
 
   }
@@ -205,13 +193,10 @@ public class RockPaperScissors extends GridClass {
 
   @Override
   public void updateGrid() {
-    rpsAlgo();
-    for (int row = 1; row < rpsGrid.length - 1; row++) {
-      for (int col = 1; col < rpsGrid[0].length - 1; col++) {
-
-        rpsGrid[row][col].setState(rpsGrid[row][col].getNextGenState());
-
-      }
+    if (kernel != null) {
+      stepActiveRows(kernel);
+    } else {
+      stepActiveTiles(this::rpsAlgo);
     }
 
   }
@@ -1,8 +1,13 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.model.unit.IndexSet;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Schelling Segregation simulation class
@@ -22,57 +27,126 @@ import java.util.ArrayList;
  * being EMPTY, AGENT1, or AGENT2 respectively. With this, you can set up your own simulation with
  * an initial configuration.
  *
+ * Where a dissatisfied agent moves is drawn from GridClass's seeded generator, so setting the
+ * optional "Seed" parameter replays the same moves every run.
+ *
+ * Nothing is rescanned during a step: the empty cells and the dissatisfied agents are kept in
+ * IndexSets and every cell keeps how many of its neighbors are agents of each type, all updated by
+ * each move, so a step costs about as much as the agents it moves. A step moves the agents that
+ * were dissatisfied when it started, each at most once, to a vacancy picked uniformly at random.
+ *
+ * With more than one thread (the optional "Threads" parameter) a step is synchronous instead: the
+ * satisfaction of every agent is evaluated in parallel bands against the grid at the start of the
+ * step, then the dissatisfied agents, in row major order, are matched to a seeded shuffle of the
+ * cells that were empty at the start. Agents left without a vacancy stay put. The result only
+ * depends on the seed, not on how many threads did the evaluating.
+ *
+ * Stepping backward with RewindBuffer moves the neighbor counts and satisfaction of the restored
+ * cells and their neighbors only, and every step logs what it did to the order of the vacancies so
+ * it can be undone one add or remove at a time; rewinding costs about as much as the step did.
+ * Only going back past a parallel step counts the neighbors of every cell again.
+ *
  * @author THIVYA SIVARAJAH
  */
 
 public class SchellingSegregation extends GridClass {
 
     private static final double satisfactionThreshold = 0.5;
-    private Cell[][] schellingSegGrid;
+    private StateGrid schellingSegGrid;
+    private Neighborhood neighborhood;
+    private IndexSet vacancies; // grid indices of the EMPTY cells
+    private IndexSet dissatisfied; // grid indices of the agents that want to move
+    private byte[][] likeNeighbors; // [agent state][grid index] neighbors in that state
+    private byte[] occupiedNeighbors; // [grid index] neighbors that are agents
+    private boolean indexesStale; // set once a parallel step moved agents behind the indexes' back
+    private boolean[] wantsToMove; // flags of the parallel satisfaction pass
+    private int[] moverBuffer;
+    private int[] vacancyBuffer;
+    private int[] restoredCells = new int[Neighborhood.MOORE_SIZE]; // cells put back by a rewind
+    private int restoredCount;
     private int gridWidth;
     private int gridHeight;
 
     private static final int EMPTY = 0;
+    private static final int OUT_OF_BOUNDS = -1;
+    // logged pairs: (STEP_START, stale flag) at the start of a step, then (vacancy, ADDED) for
+    // every vacancy added and (vacancy, its position) for every vacancy removed
+    private static final int STEP_START = -1;
+    private static final int ADDED = -1;
 
 
     // our constructor which sets up our grid portion of the UI
     public SchellingSegregation(SimulationInfo record){
 
-        int[][] inputData = record.initialGrid();
-
-        // creating the spreadingFire grid with a 1 layer cell padding of EMPTY value
-        schellingSegGrid = new Cell[inputData.length][inputData[0].length];
-
-        for (int row = 0; row < schellingSegGrid.length; row++) {
-            for (int col = 0; col < schellingSegGrid[0].length; col++) {
-                schellingSegGrid[row][col] = new Cell();
-                schellingSegGrid[row][col].setState(inputData[row][col]);
-                schellingSegGrid[row][col].setNextGenState(inputData[row][col]);
-            }
-        }
+        // agents move in place, so only the current generation buffer is needed
+        schellingSegGrid = initializeGrid(record.initialGrid(), OUT_OF_BOUNDS, false);
+        neighborhood = getNeighborhood();
+        initializeRandom(record);
+        setThreadCount(getParameter(record, THREADS, 1));
+        indexAgents();
 
         gridWidth = record.width();
         gridHeight = record.height();
     }
 
-    // see which agents in the grid are empty
-    private ArrayList<Pairs> createEmptyList() {
-        ArrayList<Pairs> emptyCells = new ArrayList<>();
-        for(int row = 0; row < schellingSegGrid.length; row++) {
-            for (int col = 0; col < schellingSegGrid[row].length; col++) {
-                if (schellingSegGrid[row][col].getMyState() == EMPTY) {
-                    Pairs p = new Pairs(row, col);
-                    emptyCells.add(p);
+    // fills the vacancy index, the neighbor counts of every cell and the dissatisfied set
+    private void indexAgents() {
+        byte[] states = schellingSegGrid.current();
+        if (vacancies == null) {
+            vacancies = new IndexSet(states.length);
+        }
+        // emptied last first, so undoExtra puts the old vacancies back in their order
+        for (int i = vacancies.size() - 1; i >= 0; i--) {
+            removeVacancy(vacancies.get(i));
+        }
+        for (int row = 0; row < schellingSegGrid.getRows(); row++) {
+            for (int col = 0; col < schellingSegGrid.getCols(); col++) {
+                int index = schellingSegGrid.index(row, col);
+                if (states[index] == EMPTY) {
+                    addVacancy(index);
                 }
+            }
+        }
+        countNeighbors();
+    }
 
+    // fills the neighbor counts of every cell and the dissatisfied set from the grid
+    private void countNeighbors() {
+        byte[] states = schellingSegGrid.current();
+        int types = EMPTY;
+        for (byte state : states) {
+            types = Math.max(types, state);
+        }
+        likeNeighbors = new byte[types + 1][states.length];
+        occupiedNeighbors = new byte[states.length];
+        dissatisfied = new IndexSet(states.length);
+        for (int row = 0; row < schellingSegGrid.getRows(); row++) {
+            for (int col = 0; col < schellingSegGrid.getCols(); col++) {
+                int index = schellingSegGrid.index(row, col);
+                if (states[index] != EMPTY) {
+                    changeNeighborCounts(index, states[index], 1);
+                }
+            }
+        }
+        for (int row = 0; row < schellingSegGrid.getRows(); row++) {
+            for (int col = 0; col < schellingSegGrid.getCols(); col++) {
+                updateSatisfaction(schellingSegGrid.index(row, col));
             }
         }
-        return emptyCells;
+    }
+
+    // adds change to the counts of every neighbor of the agent of the given type at index
+    private void changeNeighborCounts(int index, int agentState, int change) {
+        for (int i = 0; i < Neighborhood.MOORE_SIZE; i++) {
+            int neighbor = index + neighborhood.offset(i);
+            likeNeighbors[agentState][neighbor] += change;
+            occupiedNeighbors[neighbor] += change;
+        }
     }
 
     // check to see if the agent needs to move or not depending on if they are satisfied with their neighbors
-    private int isAgentSatisfied(Cell agent, int xCoordCell, int yCoordCell) {
-        double neighborStatus = sameNeighbors(agent, xCoordCell, yCoordCell);
+    private int isAgentSatisfied(int index) {
+        double neighborStatus = sameNeighbors(index);
         if (neighborStatus >= satisfactionThreshold) {
             return 0;
         } else {
@@ -80,82 +154,263 @@ public class SchellingSegregation extends GridClass {
         }
     }
 
-    // updates based on neighbor stat
-    private void updateOnCycle() {
+    // puts the cell in or out of the dissatisfied set after its neighbors changed
+    private void updateSatisfaction(int index) {
+        if (schellingSegGrid.current()[index] > EMPTY && isAgentSatisfied(index) == 1) {
+            dissatisfied.add(index);
+        } else {
+            dissatisfied.remove(index);
+        }
+    }
 
-        for(int row = 0; row < schellingSegGrid.length; row++) {
-            for (int col = 0; col < schellingSegGrid[row].length; col++) {
-                ArrayList<Pairs> newSpots = createEmptyList();
-                Pairs check = new Pairs(row, col);
-                if (newSpots.contains(check)) { continue; }
-                // swap the state of an empty cell with a dissatisfied agent
-                if (isAgentSatisfied(schellingSegGrid[row][col], row, col) == 1){
-                    System.out.println("satisfied");
-                    makeTheMove(row, col, newSpots);
-                }
+    // moves the agents that were dissatisfied when the step started, in row major order like the old
+    // full scan; one that was made satisfied by an earlier move this step stays put
+    private void updateOnCycle() {
 
+        int[] movers = dissatisfied.toArray();
+        Arrays.sort(movers);
+        for (int index : movers) {
+            if (vacancies.size() == 0) {
+                return;
+            }
+            if (dissatisfied.contains(index)) {
+                makeTheMove(index);
             }
         }
 
     }
 
-    //switch state of two elements
-    private void makeTheMove(int row, int column, ArrayList<Pairs> spots) {
-        int houseSwitchNum = getRandomNumber(0, spots.size() - 1);
-        int stateTemp1 = schellingSegGrid[row][column].getMyState();
-        Pairs emptyCoord = spots.get(houseSwitchNum);
-        schellingSegGrid[emptyCoord.x][emptyCoord.y].setState(stateTemp1);
-        spots.remove(spots.get(houseSwitchNum));
-        schellingSegGrid[row][column].setState(EMPTY);
+    //switch state of an agent and a random vacancy, then fix up the counts around both cells
+    private void makeTheMove(int index) {
+        int row = schellingSegGrid.rowOf(index);
+        int column = schellingSegGrid.colOf(index);
+        int destination = vacancies.get(getRandomNumber(row, column, 0, vacancies.size()));
+        byte[] states = schellingSegGrid.current();
+        int agentState = states[index];
+
+        logChange(index, agentState);
+        logChange(destination, EMPTY);
+        states[index] = EMPTY;
+        addVacancy(index);
+        dissatisfied.remove(index);
+        changeNeighborCounts(index, agentState, -1);
+
+        states[destination] = (byte) agentState;
+        removeVacancy(destination);
+        changeNeighborCounts(destination, agentState, 1);
+
+        updateSatisfaction(destination);
+        updateNeighborSatisfaction(index);
+        updateNeighborSatisfaction(destination);
     }
 
-    // random number generator for deciding where to make the move
-    private int getRandomNumber(int min, int max) {
+    // adds an empty cell to the vacancies, logging it for undoExtra
+    private void addVacancy(int index) {
+        logExtra(index);
+        logExtra(ADDED);
+        vacancies.add(index);
+    }
 
-        return (int) ((Math.random() * (max - min)) + min);
+    // takes a cell out of the vacancies, logging where it sat for undoExtra
+    private void removeVacancy(int index) {
+        logExtra(index);
+        logExtra(vacancies.positionOf(index));
+        vacancies.remove(index);
     }
 
-    // checks to see what fraction of our valid neighbors (empty cells not included) are the same
-    private double sameNeighbors(Cell agent, int xCoordCell, int yCoordCell) {
-        int[] neighbors = agent.neighborStatus(schellingSegGrid, xCoordCell, yCoordCell, schellingSegGrid.length, schellingSegGrid[0].length);
-        int numNeighbors = 0;
-        int sameNeighbors = 0;
-        for(int i = 0; i < neighbors.length; i++) {
-            if (neighbors[i] > 0) {
-                numNeighbors += 1;
-                if (agent.getMyState() == neighbors[i] ) {
-                    sameNeighbors += 1;
-                }
-            }
+    private void updateNeighborSatisfaction(int index) {
+        for (int i = 0; i < Neighborhood.MOORE_SIZE; i++) {
+            updateSatisfaction(index + neighborhood.offset(i));
         }
+    }
+
+    // random number generator for deciding where the agent at row, column makes the move, seeded
+    // and keyed by the step and the agent so runs can be replayed; gives a number in [min, max)
+    private int getRandomNumber(int row, int column, int min, int max) {
+
+        return randomInt(row, column, 0, max - min) + min;
+    }
+
+    // checks to see what fraction of our valid neighbors (empty cells not included) are the same,
+    // read off the counts kept up to date by every move
+    private double sameNeighbors(int index) {
+        int agentState = schellingSegGrid.current()[index];
+        int numNeighbors = occupiedNeighbors[index];
+        int sameNeighbors = agentState > EMPTY ? likeNeighbors[agentState][index] : 0;
         double neighborhoodStats = ((float) sameNeighbors) / numNeighbors;
-        System.out.println(neighborhoodStats);
         return neighborhoodStats;
     }
 
+    // one synchronous step for several threads: every agent's satisfaction is worked out from the
+    // grid as it was at the start of the step, then the movers are matched to a seeded shuffle of
+    // the vacancies, so no two agents ever claim the same empty cell
+    private void parallelCycle() {
+
+        byte[] states = schellingSegGrid.current();
+        if (wantsToMove == null) {
+            wantsToMove = new boolean[states.length];
+            moverBuffer = new int[states.length];
+            vacancyBuffer = new int[states.length];
+        }
+        forEachBand(schellingSegGrid.getRows(), this::markMovers);
+
+        int movers = 0;
+        int vacant = 0;
+        for (int row = 0; row < schellingSegGrid.getRows(); row++) {
+            for (int col = 0; col < schellingSegGrid.getCols(); col++) {
+                int index = schellingSegGrid.index(row, col);
+                if (wantsToMove[index]) {
+                    moverBuffer[movers++] = index;
+                } else if (states[index] == EMPTY) {
+                    vacancyBuffer[vacant++] = index;
+                }
+            }
+        }
+
+        // the i-th mover swaps a random one of the vacancies not handed out yet into slot i
+        for (int i = 0; i < Math.min(movers, vacant); i++) {
+            int mover = moverBuffer[i];
+            int pick = getRandomNumber(schellingSegGrid.rowOf(mover), schellingSegGrid.colOf(mover),
+                i, vacant);
+            int destination = vacancyBuffer[pick];
+            vacancyBuffer[pick] = vacancyBuffer[i];
+            logChange(destination, EMPTY);
+            logChange(mover, states[mover]);
+            states[destination] = states[mover];
+            states[mover] = EMPTY;
+        }
+        indexesStale = true;
+
+    }
+
+    // flags the dissatisfied agents of a band of rows, counting their neighbors from the grid since
+    // the incremental counts are not kept up by parallel steps
+    private void markMovers(int fromRow, int toRow) {
+        byte[] states = schellingSegGrid.current();
+        for (int row = fromRow; row < toRow; row++) {
+            for (int col = 0; col < schellingSegGrid.getCols(); col++) {
+                int index = schellingSegGrid.index(row, col);
+                int agentState = states[index];
+                if (agentState == EMPTY) {
+                    wantsToMove[index] = false;
+                    continue;
+                }
+                int numNeighbors = neighborhood.countMooreAbove(states, index, EMPTY);
+                int sameNeighbors = neighborhood.countMoore(states, index, agentState);
+                double neighborhoodStats = ((float) sameNeighbors) / numNeighbors;
+                wantsToMove[index] = !(neighborhoodStats >= satisfactionThreshold);
+            }
+        }
+    }
+
+    // moves the neighbor counts around a cell put back by a rewind from its current state to the
+    // restored one; the vacancies are left alone since undoExtra puts back their order
     @Override
-    public void updateGrid() {
-        updateOnCycle();
+    protected void restoreState(int row, int col, int state) {
+        if (indexesStale) {
+            super.restoreState(row, col, state);
+            return;
+        }
+        int index = schellingSegGrid.index(row, col);
+        int oldState = schellingSegGrid.current()[index];
+        if (oldState > EMPTY) {
+            changeNeighborCounts(index, oldState, -1);
+        }
+        super.restoreState(row, col, state);
+        if (state > EMPTY) {
+            changeNeighborCounts(index, state, 1);
+        }
+        if (restoredCount == restoredCells.length) {
+            restoredCells = Arrays.copyOf(restoredCells, restoredCount * 2);
+        }
+        restoredCells[restoredCount++] = index;
+    }
+
+    // only the restored cells and their neighbors can have changed satisfaction
+    @Override
+    protected void cellsRestored(long step) {
+        super.cellsRestored(step);
+        for (int i = 0; i < restoredCount; i++) {
+            updateSatisfaction(restoredCells[i]);
+            updateNeighborSatisfaction(restoredCells[i]);
+        }
+        restoredCount = 0;
+    }
+
+    // undoes the logged vacancy changes from the newest back. Going back past a parallel step to
+    // indexes that were up to date counts the neighbors again, since restoreState skipped them,
+    // but keeps the vacancies, which parallel steps never touch.
+    @Override
+    protected void undoExtra(int[] values) {
+        for (int i = values.length - 2; i >= 0; i -= 2) {
+            if (values[i] == STEP_START) {
+                boolean wasStale = values[i + 1] != 0;
+                if (indexesStale && !wasStale) {
+                    countNeighbors();
+                }
+                indexesStale = wasStale;
+            } else if (values[i + 1] == ADDED) {
+                vacancies.remove(values[i]);
+            } else {
+                vacancies.insert(values[i], values[i + 1]);
+            }
+        }
+    }
 
-        System.out.println();
-        // testing for correctly updated grid
-        for (int row = 0; row < schellingSegGrid.length; row++) {
-            for (int col = 0; col < schellingSegGrid[row].length; col++) {
+    // the order of the vacancies decides where the next movers land, so a checkpoint keeps it
+    @Override
+    protected void writeExtraState(DataOutput out) throws IOException {
+        out.writeBoolean(indexesStale);
+        if (!indexesStale) {
+            int[] order = vacancies.toArray();
+            out.writeInt(order.length);
+            writeInts(out, order, order.length);
+        }
+    }
 
-                System.out.print(schellingSegGrid[row][col].getMyState() + ", ");
+    // going back to a state with indexes from one a parallel step left stale has to count every
+    // cell again, like the next sequential step would
+    @Override
+    protected void readExtraState(DataInput in) throws IOException {
+        boolean stale = in.readBoolean();
+        if (!stale) {
+            if (indexesStale) {
+                indexAgents();
+            }
+            int[] order = new int[in.readInt()];
+            readInts(in, order, order.length);
+            vacancies.clear();
+            for (int index : order) {
+                vacancies.add(index);
+            }
+        }
+        indexesStale = stale;
+    }
 
+    @Override
+    public void updateGrid() {
+        logExtra(STEP_START);
+        logExtra(indexesStale ? 1 : 0);
+        if (getThreadCount() > 1) {
+            parallelCycle();
+        } else {
+            if (indexesStale) {
+                indexAgents();
+                indexesStale = false;
             }
-            System.out.println();
+            updateOnCycle();
         }
+        advanceStep();
     }
 
     @Override
     public String getCellState(int row, int col, boolean intValue){
 
-        if(schellingSegGrid[row][col].getMyState() == 0){
+        int state = schellingSegGrid.getState(row, col);
+        if(state == 0){
             return intValue ? "0" : "EMPTY";
         }
-        else if(schellingSegGrid[row][col].getMyState() == 1){
+        else if(state == 1){
             return intValue ? "1" : "AGENT1";
         }
         else{
@@ -0,0 +1,60 @@
+package cellsociety.model;
+
+import cellsociety.XMLException;
+import cellsociety.view.SimulationInfo;
+
+/**
+ * Purpose: Creates the GridClass simulation named by the type of a SimulationInfo record, so both
+ * the JavaFX GridView and the headless runner build simulations the same way
+ * <p>
+ * Assumptions: The record type was already normalized by SimulationInfo (lower case, no spaces).
+ * <p>
+ * Dependencies: Depends on every simulation in cellsociety.model and the SimulationInfo record.
+ * <p>
+ * Example: GridClass model = SimulationFactory.create(new FileReader(path).getRecord());
+ *
+ * @author ERIC XIE
+ */
+
+public class SimulationFactory {
+
+  private SimulationFactory() {
+  }
+
+  /**
+   * Purpose: Builds the simulation for a record read from an XML file
+   * <p>
+   * Exceptions: Throws an XMLException when the type is not a known simulation, and passes on the
+   * XMLExceptions of the simulation constructors (e.g. a required parameter not being given).
+   *
+   * @param record the simulation information read from the XML file
+   * @return the simulation described by the record
+   */
+  public static GridClass create(SimulationInfo record) {
+    switch (record.type()) {
+      case "schellingsegregation" -> {
+        return new SchellingSegregation(record);
+      }
+      case "gameoflife" -> {
+        return new GameOfLife(record);
+      }
+      case "watorworld" -> {
+        return new WatorWorld(record);
+      }
+      case "spreadingoffire" -> {
+        return new SpreadingFire(record);
+      }
+      case "cspercolation" -> {
+        return new CsPercolation(record);
+      }
+      case "rockpaperscissors" -> {
+        return new RockPaperScissors(record);
+      }
+      case "fallingsandandwater" -> {
+        return new FallingSandWater(record);
+      }
+      default -> throw new XMLException("Unknown simulation type: " + record.type());
+    }
+  }
+
+}
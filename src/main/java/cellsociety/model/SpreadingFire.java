@@ -1,8 +1,10 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
 import cellsociety.XMLException;
+import java.util.Arrays;
 
 
 /**
@@ -31,18 +33,35 @@ import cellsociety.XMLException;
  * choosing the XML file of choice in the resources file.
  * <p>
  * Other: The other private instance variables (TOTAL_NEIGHBORS_CHECKED and DECIMAL_CONSTANT) are
- * used for game logic. The first checks only the first 4 elements in the neighborStatus. The
+ * used for game logic. The first checks only the first 4 directions of the Neighborhood. The
  * decimal constant is used to divide the integer input provided into a decimal for easier random
  * calculation.
+ * <p>
+ * Random draws come from the counter based generator of GridClass, keyed by the step, the tree and
+ * the direction of the burning neighbor. The optional "Seed" parameter replays a run exactly.
+ * <p>
+ * By default a step only visits the burning cells and the trees next to them, so it costs as much
+ * as the fire front is long instead of the whole forest. Setting the optional "Frontier" parameter
+ * to 0 scans every cell instead, which the optional "Threads" parameter can split over several
+ * threads. Every path makes the same draws, so they all give the same forest after every step.
+ * <p>
+ * Setting the optional "Off Heap" parameter to 1 keeps the grid in memory mapped files (see
+ * MappedGrid) for forests larger than the heap; every step then scans the whole forest, streaming
+ * it through a window of rows, and still makes the same draws.
  *
  * @author ERIC XIE
  */
 
 public class SpreadingFire extends GridClass {
 
-  private static double probCatch;
-  private static Cell[][] spreadingFireGrid;
-
+  private double probCatch;
+  private StateGrid spreadingFireGrid;
+  private Neighborhood neighborhood;
+  private int[] burning; // grid indices of the BURNING cells, null for full scans
+  private int[] nextBurning;
+  private int burningSize;
+  private int[] restoredFires = new int[MIN_FRONT_CAPACITY]; // cells a rewind set BURNING
+  private int restoredFireCount;
 
   private final static int EMPTY = 0;
   private final static int TREE = 1;
@@ -50,6 +69,7 @@ public class SpreadingFire extends GridClass {
 
   private static final int TOTAL_NEIGHBORS_CHECKED = 4;
   private static final int DECIMAL_CONSTANT = 100;
+  private static final int MIN_FRONT_CAPACITY = 16;
 
   /**
    * Purpose: This is a spreadingFire constructor, which is used to create spreading fire simulation
@@ -72,85 +92,168 @@ public class SpreadingFire extends GridClass {
    */
 
   public SpreadingFire(SimulationInfo record) {
-    int[][] inputData = record.initialGrid();
-
     // creating the spreadingFire grid with a 1 layer cell padding of EMPTY value
-    spreadingFireGrid = new Cell[inputData.length + 2][inputData[0].length + 2];
-    fillEmptyPadding(spreadingFireGrid);
-
-    for (int row = 1; row < spreadingFireGrid.length - 1; row++) {
-      for (int col = 1; col < spreadingFireGrid[0].length - 1; col++) {
-        spreadingFireGrid[row][col].setState(inputData[row - 1][col - 1]);
-        spreadingFireGrid[row][col].setNextGenState(inputData[row - 1][col - 1]);
-      }
+    boolean offHeap = getParameter(record, OFF_HEAP, 0) != 0;
+    spreadingFireGrid = offHeap ? initializeMappedGrid(record, EMPTY)
+        : initializeGrid(record.initialGrid(), EMPTY, true);
+    neighborhood = getNeighborhood();
+    setThreadCount(getParameter(record, THREADS, 1));
+    initializeRandom(record);
+    if (!offHeap && getParameter(record, FRONTIER, 1) != 0) {
+      initializeFront();
     }
+
     try {
       probCatch = record.possibleParameters().get("Probability of Catching Fire");
     } catch (NullPointerException e) {
       throw new XMLException("Required parameter not given");
     }
     probCatch /= DECIMAL_CONSTANT;
-    System.out.println(probCatch);
 
 
   }
 
-  // The "main", private method to call to simulate the fire and tree interactions in a step
+  // The "main", private method to call to simulate the fire and tree interactions of a cell in a
+  // step, run by stepAllCells on one or more threads
 
-  private static void spreadFireAlgo() {
+  private void spreadFireAlgo(int index) {
 
-    for (int row = 1; row < spreadingFireGrid.length - 1; row++) {
-      for (int col = 1; col < spreadingFireGrid[0].length - 1; col++) {
+    byte[] current = spreadingFireGrid.current();
+    byte[] nextGen = spreadingFireGrid.next();
+    nextGen[index] = current[index];
+    if (current[index] == TREE) {
+      checkFireSpread(index);
+    } else if (current[index] == BURNING) {
+      nextGen[index] = EMPTY;
+    }
 
-        Cell currentCell = spreadingFireGrid[row][col];
+  }
 
-        if (currentCell.getMyState() == TREE) {
-          checkFireSpread(currentCell, row, col);
-        } else if (currentCell.getMyState() == BURNING) {
-          currentCell.setNextGenState(EMPTY);
-        }
+  // applies the algorithm to the cell[][] array specifically for tree cells
 
-      }
+  private void checkFireSpread(int index) {
+
+    if (catchesFire(index)) {
+      spreadingFireGrid.next()[index] = BURNING;
     }
 
   }
 
-  // applies the algorithm to the cell[][] array specifically for tree cells
+  // decides if a tree catches this step, with one draw per burning neighbor
 
-  private static void checkFireSpread(Cell inputCell, int row, int col) {
+  private boolean catchesFire(int index) {
 
     // this algorithm only checks the N, E, S, W of the cell
 
-    int[] cellNeighbors = inputCell.neighborStatus(spreadingFireGrid, row, col,
-        spreadingFireGrid.length, spreadingFireGrid[0].length);
+    byte[] current = spreadingFireGrid.current();
 
     for (int i = 0; i < TOTAL_NEIGHBORS_CHECKED; i++) {
 
-      if (cellNeighbors[i] == BURNING) {
-        if (Math.random() < probCatch) {
-          inputCell.setNextGenState(BURNING);
+      if (neighborhood.neighbor(current, index, i) == BURNING) {
+        if (randomDouble(spreadingFireGrid.rowOf(index), spreadingFireGrid.colOf(index), i)
+            < probCatch) {
+          return true;
         }
 
       }
 
     }
+    return false;
 
   }
 
-  // this method is used when creating the specific gameOfLife grid in each gameOfLife simulation
-  // it takes the newly created grid and fills the entire thing with empty cells
-
-  private void fillEmptyPadding(Cell[][] fireGrid) {
-
-    for (int row = 0; row < fireGrid.length; row++) {
-      for (int col = 0; col < fireGrid[0].length; col++) {
+  // collects the cells burning at the start; the lists grow with the fire instead of being sized
+  // for the whole forest
+
+  private void initializeFront() {
+
+    byte[] current = spreadingFireGrid.current();
+    burning = new int[MIN_FRONT_CAPACITY];
+    nextBurning = new int[MIN_FRONT_CAPACITY];
+    for (int row = 0; row < spreadingFireGrid.getRows(); row++) {
+      for (int col = 0; col < spreadingFireGrid.getCols(); col++) {
+        int index = spreadingFireGrid.index(row, col);
+        if (current[index] == BURNING) {
+          if (burningSize == burning.length) {
+            burning = Arrays.copyOf(burning, burningSize * 2);
+          }
+          burning[burningSize++] = index;
+        }
+      }
+    }
+  }
 
-        fireGrid[row][col] = new Cell();
-        fireGrid[row][col].setState(EMPTY);
+  // keeps the restored cells that burn, which the front does not hold yet since a rewind only
+  // writes cells whose state changes
+  @Override
+  protected void restoreState(int row, int col, int state) {
+    super.restoreState(row, col, state);
+    if (burning != null && state == BURNING) {
+      if (restoredFireCount == restoredFires.length) {
+        restoredFires = Arrays.copyOf(restoredFires, restoredFireCount * 2);
       }
+      restoredFires[restoredFireCount++] = spreadingFireGrid.index(row, col);
     }
+  }
 
+  // the front after stepping backward drops the cells that no longer burn and takes on the
+  // restored fires, without scanning the forest
+  @Override
+  protected void cellsRestored(long step) {
+    super.cellsRestored(step);
+    if (burning == null) {
+      return;
+    }
+    byte[] current = spreadingFireGrid.current();
+    int kept = 0;
+    for (int i = 0; i < burningSize; i++) {
+      if (current[burning[i]] == BURNING) {
+        burning[kept++] = burning[i];
+      }
+    }
+    if (kept + restoredFireCount > burning.length) {
+      burning = Arrays.copyOf(burning, Math.max(burning.length * 2, kept + restoredFireCount));
+    }
+    System.arraycopy(restoredFires, 0, burning, kept, restoredFireCount);
+    burningSize = kept + restoredFireCount;
+    restoredFireCount = 0;
+  }
 
+  // steps only the fire front: every tree next to a burning cell draws against current(), the
+  // trees that catch are marked in next() so a tree next to several fires is only queued once, and
+  // only then do the burning cells burn out and the new fires show up in both buffers
+
+  private void stepFront() {
+
+    byte[] current = spreadingFireGrid.current();
+    byte[] nextGen = spreadingFireGrid.next();
+    int nextSize = 0;
+    for (int i = 0; i < burningSize; i++) {
+      for (int direction = 0; direction < TOTAL_NEIGHBORS_CHECKED; direction++) {
+        int index = burning[i] + neighborhood.offset(direction);
+        if (current[index] == TREE && nextGen[index] == TREE && catchesFire(index)) {
+          nextGen[index] = BURNING;
+          if (nextSize == nextBurning.length) {
+            nextBurning = Arrays.copyOf(nextBurning, nextSize * 2);
+          }
+          nextBurning[nextSize++] = index;
+        }
+      }
+    }
+    for (int i = 0; i < burningSize; i++) {
+      logChange(burning[i], BURNING);
+      current[burning[i]] = EMPTY;
+      nextGen[burning[i]] = EMPTY;
+    }
+    for (int i = 0; i < nextSize; i++) {
+      logChange(nextBurning[i], TREE);
+      current[nextBurning[i]] = BURNING;
+    }
+    int[] temp = burning;
+    burning = nextBurning;
+    nextBurning = temp;
+    burningSize = nextSize;
+    advanceStep();
   }
 
   /**
@@ -170,13 +273,12 @@ public class SpreadingFire extends GridClass {
 
   @Override
   public void updateGrid() {
-    spreadFireAlgo();
-    for (int row = 1; row < spreadingFireGrid.length - 1; row++) {
-      for (int col = 1; col < spreadingFireGrid[0].length - 1; col++) {
-
-        spreadingFireGrid[row][col].setState(spreadingFireGrid[row][col].getNextGenState());
-
-      }
+    if (isOffHeap()) {
+      stepMappedBands(this::spreadFireAlgo);
+    } else if (burning != null) {
+      stepFront();
+    } else {
+      stepAllCells(this::spreadFireAlgo);
     }
   }
 
@@ -202,9 +304,10 @@ public class SpreadingFire extends GridClass {
   @Override
   public String getCellState(int row, int col, boolean intValue) {
 
-    if (spreadingFireGrid[row + 1][col + 1].getMyState() == 0) {
+    int state = getState(row, col);
+    if (state == 0) {
       return intValue ? "0" : "EMPTY";
-    } else if (spreadingFireGrid[row + 1][col + 1].getMyState() == 1) {
+    } else if (state == 1) {
       return intValue ? "1" : "TREE";
     } else {
       return intValue ? "2" : "BURNING";
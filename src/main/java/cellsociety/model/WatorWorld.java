@@ -1,10 +1,12 @@
 package cellsociety.model;
 
-import cellsociety.model.unit.Cell;
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.StateGrid;
 import cellsociety.view.SimulationInfo;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Random;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 
 /**
@@ -26,206 +28,601 @@ import java.util.Random;
  * being EMPTY, FISH, or SHARK respectively. With this, you can set up your own simulation with
  * an initial configuration.
  *
+ * Fish and sharks pick their direction with GridClass's seeded generator; the optional "Seed"
+ * parameter makes a run reproducible.
+ *
+ * The creatures live in parallel int arrays (position, type, age and energy) with a per-cell
+ * layer pointing back at the creature in each cell, so a step visits the creatures instead of the
+ * whole ocean.
+ *
+ * By default the rules are the ones the per-cell version ran, so existing configurations behave as
+ * they always did: every creature picks its direction from the ocean at the start of the step,
+ * then the cells that held a creature are visited in row major order. The creature found in a cell
+ * loses a chronon (its energy) and dies when it reaches exactly 0; otherwise it moves the way that
+ * cell's first creature chose, onto whatever is there, and comes back to 4 chronons. A creature
+ * moving into an empty cell further along the scan loses that cell's chronon straight away, and
+ * one moving into a creature's cell further along is moved again from there. Nothing is ever born
+ * and the age array stays 0. The row major order is rebuilt every step with two counting passes
+ * over the creatures, by column and then by row, so a step costs O(creatures + rows + columns).
+ *
+ * Setting the optional "Breeding" parameter to 1 runs the textbook Wa-Tor rules instead. Each step
+ * visits the creatures alive at its start in a seeded shuffled order: a fish swims to a random
+ * empty neighbor, a shark eats a random fish neighbor if it has one and swims to a random empty
+ * neighbor otherwise. A creature that moved and is at least its breed time old leaves a newborn
+ * behind and starts aging again. A shark loses one energy each step, starves before moving when it
+ * runs out and gains energy for every fish it eats. Newborns first move the next step, and the
+ * eaten and starved are compacted out of the arrays at the end of the step. The optional "Fish
+ * Breed Time", "Shark Breed Time", "Shark Energy" and "Energy Per Fish" parameters tune these
+ * rules and are ignored without "Breeding".
+ *
+ * A checkpoint keeps the creatures in slot order with their ages and energies, which cannot be
+ * read off the grid. For RewindBuffer every step logs the cells it writes and the creatures it
+ * starts with, so stepping backward costs as much as the creatures, not the ocean.
+ *
+ * With more than one thread (the optional "Threads" parameter) the ocean is cut into 16x16 blocks
+ * visited in four phases, each running every other block row and column on the ForkJoin pool. A
+ * visit only moves a creature into the cell next to it, so blocks of the same phase never fight
+ * over a cell. On the default rules the directions are picked in parallel first and the scan goes
+ * phase by phase and row major inside each block; with "Breeding" the creatures of each block are
+ * shuffled by block. A seed replays the same run whatever the thread count, but not the same run
+ * as a single thread: creatures meeting across a block edge can settle differently.
+ *
  * @author THIVYA SIVARAJAH
  */
 
-public class WatorWorld<memo> extends GridClass {
-
-    private Cell[][] watorWorldGrid;
-    private int gridWidth;
-    private int gridHeight;
-    private int numberNeighbors = 4;
-    private int resetTime = 0;
-    private int sharkAteFish = 2;
+public class WatorWorld extends GridClass {
+
+    private StateGrid watorWorldGrid;
+    private Neighborhood neighborhood;
+    private boolean breeding; // textbook rules instead of the per-cell version's
+    private int[] agentAt; // slot of the creature in each cell, lined up with the state grid
+    private int[] directions; // direction of each cell's first creature this step, or NOT_VISITED
+    private int[] position; // grid index of each creature
+    private int[] type; // FISH or SHARK, EMPTY once eaten or starved
+    private int[] age; // steps since the creature was born or last bred, only with breeding
+    private int[] energy; // steps the creature can still go without eating, its chronons
+    private int agentCount;
+    private int[] order; // visiting order of the step, cells by default and slots with breeding
+    private int[] blockOrder; // the cells of order grouped by block, for parallel steps
+    private int[] blockStart; // where each block's cells or creatures start, for parallel steps
+    private int[] rowStart; // counting pass buckets of the row major order
+    private int[] colStart;
+    private int blockRows;
+    private int blockCols;
+    private int fishBreedTime;
+    private int sharkBreedTime;
     private int sharkEnergy = 4;
-    private int reproductionThresh = 4;
+    private int energyPerFish;
 
     private final static int EMPTY = 0;
     private final static int FISH = 1;
     private final static int SHARK = 2;
-    private HashMap<String, Integer> memo;
+    private final static int OUT_OF_BOUNDS = -1;
+    private final static int NO_AGENT = -1;
+    private final static int NOT_VISITED = -2;
+    private final static int DIRECTION_STREAM = 0;
+    private final static int SHUFFLE_STREAM = 1;
+    private final static int BLOCK_STREAM = 2;
+    private final static int MIN_CAPACITY = 16;
+    private final static int BLOCK_SIZE = 16;
+    private final static int PHASES = 4;
 
     // our constructor which sets up our grid portion of the UI
     public WatorWorld(SimulationInfo record){
 
-        int[][] inputData = record.initialGrid();
+        // creatures move in place, so only the current generation buffer is needed
+        watorWorldGrid = initializeGrid(record.initialGrid(), OUT_OF_BOUNDS, false);
+        neighborhood = getNeighborhood();
+        initializeRandom(record);
+        setThreadCount(getParameter(record, THREADS, 1));
+        breeding = getParameter(record, "Breeding", 0) == 1;
+        if (breeding) {
+            fishBreedTime = getParameter(record, "Fish Breed Time", 4);
+            sharkBreedTime = getParameter(record, "Shark Breed Time", 4);
+            sharkEnergy = getParameter(record, "Shark Energy", 4);
+            energyPerFish = getParameter(record, "Energy Per Fish", 2);
+        } else {
+            directions = watorWorldGrid.createLayer();
+            Arrays.fill(directions, NOT_VISITED);
+            rowStart = new int[watorWorldGrid.getRows() + 1];
+            colStart = new int[watorWorldGrid.getCols() + 1];
+        }
+        createAgents();
 
-        // creating the spreadingFire grid with a 1 layer cell padding of EMPTY value
-        watorWorldGrid = new Cell[inputData.length][inputData[0].length];
+    }
 
-        for (int row = 0; row < watorWorldGrid.length; row++) {
-            for (int col = 0; col < watorWorldGrid[0].length; col++) {
-                watorWorldGrid[row][col] = new Cell();
-                watorWorldGrid[row][col].setState(inputData[row][col]);
-                watorWorldGrid[row][col].setNextGenState(inputData[row][col]);
+    // lists every creature of the initial grid, in row major order
+    private void createAgents() {
+        byte[] states = watorWorldGrid.current();
+        agentAt = watorWorldGrid.createLayer();
+        Arrays.fill(agentAt, NO_AGENT);
+        resizeAgents(MIN_CAPACITY);
+        for (int row = 0; row < watorWorldGrid.getRows(); row++) {
+            for (int col = 0; col < watorWorldGrid.getCols(); col++) {
+                int cell = watorWorldGrid.index(row, col);
+                if (states[cell] == FISH || states[cell] == SHARK) {
+                    addAgent(states[cell], cell);
+                }
             }
         }
+    }
+
+    private void resizeAgents(int capacity) {
+        position = position == null ? new int[capacity] : Arrays.copyOf(position, capacity);
+        type = type == null ? new int[capacity] : Arrays.copyOf(type, capacity);
+        age = age == null ? new int[capacity] : Arrays.copyOf(age, capacity);
+        energy = energy == null ? new int[capacity] : Arrays.copyOf(energy, capacity);
+        order = new int[capacity];
+        blockOrder = new int[capacity];
+    }
 
+    // appends a creature of the given type in an empty cell
+    private void addAgent(int agentType, int cell) {
+        if (agentCount == position.length) {
+            resizeAgents(agentCount * 2);
+        }
+        placeAgent(agentCount++, agentType, cell);
+    }
 
+    // puts a newborn of the given type in the given slot and empty cell; on the default rules it
+    // starts with the chronons of an untouched cell
+    private void placeAgent(int agent, int agentType, int cell) {
+        logChange(cell, watorWorldGrid.current()[cell]);
+        position[agent] = cell;
+        type[agent] = agentType;
+        age[agent] = 0;
+        energy[agent] = breeding && agentType == SHARK ? sharkEnergy : 0;
+        agentAt[cell] = agent;
+        watorWorldGrid.current()[cell] = (byte) agentType;
     }
 
+    // takes the creature out of the ocean; its slot is compacted out at the end of the step
+    private void removeAgent(int agent) {
+        logChange(position[agent], type[agent]);
+        watorWorldGrid.current()[position[agent]] = EMPTY;
+        agentAt[position[agent]] = NO_AGENT;
+        type[agent] = EMPTY;
+    }
 
-    // updates based on neighbor stat
-    private void updateOnCycle(int gridWidth, int gridHeight) {
+    private void updateOnCycle() {
 
-        memo = new HashMap<>();
-        for(int row = 0; row < gridWidth; row++) {
-            for (int col = 0; col < gridHeight; col++) {
-                int index = getDirection(row, col);
-                memo.put(row + "," + col, index);
-            }
-        }
-        System.out.println(memo);
-        for(int row = 0; row < gridWidth; row++) {
-            for(int col = 0; col < gridHeight; col++) {
-                cellMoves(watorWorldGrid, row, col, memo.get(row + "," + col));
+        int livingAtStart = agentCount;
+        if (breeding) {
+            if (getChangeLog() != null) {
+                for (int agent = 0; agent < livingAtStart; agent++) {
+                    logExtra(position[agent]);
+                    logExtra(age[agent]);
+                    logExtra(energy[agent]);
+                }
             }
+            updateWithBreeding(livingAtStart);
+        } else {
+            updateInScanOrder(livingAtStart);
         }
+        compactAgents();
 
     }
 
-    private void cellMoves(Cell[][] watorWorldGrid, int row, int col, int direction) {
-
-        int index = direction;
-        System.out.println(index);
-        int [] [] dir = {{1,0},{-1,0},{0,1},{0,-1},{1,1},{-1,-1},{-1,1},{1,-1},{0,0}};
-        index = updateTimeAndEnergy(index, watorWorldGrid[row][col]);
-
-        if (index != -1) {
-            if(watorWorldGrid[row][col].getMyState() == FISH || watorWorldGrid[row][col].getMyState() == SHARK) {
-                swapCell(watorWorldGrid[row][col], watorWorldGrid[row + dir[index][0]][col + dir[index][1]]);
-            }
-            else if (watorWorldGrid[row][col].getMyState() == FISH && watorWorldGrid[row + dir[index][0]][col + dir[index][1]].getMyState() == SHARK) {
-                watorWorldGrid[row + dir[index][0]][col + dir[index][1]].setChronons(sharkAteFish + watorWorldGrid[row + dir[index][0]][col + dir[index][1]].getChronons());
+    // works out every direction before anything moves, then visits the cells that held a creature
+    private void updateInScanOrder(int livingAtStart) {
+        sortCells(livingAtStart);
+        if (getChangeLog() != null) {
+            for (int i = 0; i < livingAtStart; i++) {
+                logExtra(order[i]);
+                logExtra(energy[agentAt[order[i]]]);
             }
-            else if (watorWorldGrid[row + dir[index][0]][col + dir[index][1]].getMyState() == SHARK) {
-                sharkReproduce(watorWorldGrid[row][col], watorWorldGrid[row + dir[index][0]][col + dir[index][1]]);
+        }
+        forEachBand(livingAtStart, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                directions[order[i]] = getDirection(order[i]);
             }
-            else if (watorWorldGrid[row + dir[index][0]][col + dir[index][1]].getMyState() == FISH) {
-                fishReproduce(watorWorldGrid[row][col], watorWorldGrid[row + dir[index][0]][col + dir[index][1]]);
+        });
+        if (getThreadCount() > 1) {
+            bucketCells(livingAtStart);
+            updateInPhases(livingAtStart);
+        } else {
+            for (int i = 0; i < livingAtStart; i++) {
+                cellMoves(order[i]);
             }
         }
+        for (int i = 0; i < livingAtStart; i++) {
+            directions[order[i]] = NOT_VISITED;
+        }
     }
 
-    private int updateTimeAndEnergy(int index, Cell unit) {
-        unit.setTime(unit.getTime() + 1);
-        unit.setChronons(unit.getChronons() - 1);
-        int direction;
+    // puts the creatures' cells in row major order: a stable counting pass by column into
+    // blockOrder, which is free until bucketCells, then one by row back into order
+    private void sortCells(int livingAtStart) {
+        Arrays.fill(colStart, 0);
+        for (int agent = 0; agent < livingAtStart; agent++) {
+            colStart[watorWorldGrid.colOf(position[agent]) + 1]++;
+        }
+        for (int col = 0; col < watorWorldGrid.getCols(); col++) {
+            colStart[col + 1] += colStart[col];
+        }
+        for (int agent = 0; agent < livingAtStart; agent++) {
+            blockOrder[colStart[watorWorldGrid.colOf(position[agent])]++] = position[agent];
+        }
+        Arrays.fill(rowStart, 0);
+        for (int i = 0; i < livingAtStart; i++) {
+            rowStart[watorWorldGrid.rowOf(blockOrder[i]) + 1]++;
+        }
+        for (int row = 0; row < watorWorldGrid.getRows(); row++) {
+            rowStart[row + 1] += rowStart[row];
+        }
+        for (int i = 0; i < livingAtStart; i++) {
+            order[rowStart[watorWorldGrid.rowOf(blockOrder[i])]++] = blockOrder[i];
+        }
+    }
 
-        if(unit.getChronons() == 0) {
-            direction = -1;
-            unit.setState(EMPTY);
+    // a visit only reads and writes the cells next to the visited one, so blocks at least one
+    // block apart never touch the same cell; the four phases each visit a checkerboard
+    // quarter of the blocks in parallel, once bucketCells or bucketAgents has grouped them by block
+    private void updateInPhases(int livingAtStart) {
+        for (int phase = 0; phase < PHASES; phase++) {
+            int blockRowParity = phase / 2;
+            int blockColParity = phase % 2;
+            forEachBand((blockRows - blockRowParity + 1) / 2, (from, to) -> {
+                for (int band = from; band < to; band++) {
+                    int blockRow = 2 * band + blockRowParity;
+                    for (int blockCol = blockColParity; blockCol < blockCols; blockCol += 2) {
+                        int block = blockRow * blockCols + blockCol;
+                        if (breeding) {
+                            blockMoves(block, livingAtStart);
+                            continue;
+                        }
+                        for (int i = blockStart[block]; i < blockStart[block + 1]; i++) {
+                            cellMoves(blockOrder[i]);
+                        }
+                    }
+                }
+            });
         }
-        else {
-            direction = index;
+    }
+
+    // stable counting sort of the sorted cells by block, so each block stays in row major order
+    private void bucketCells(int livingAtStart) {
+        countBlocks(order, livingAtStart);
+        for (int i = 0; i < livingAtStart; i++) {
+            blockOrder[blockStart[blockOf(order[i])]++] = order[i];
         }
-        return direction;
+        shiftBlockStarts();
     }
 
-    private void swapCell(Cell oldCell, Cell newCell) {
-        int state = oldCell.getMyState();
-        int time = oldCell.getTime();
-        int chronons = oldCell.getChronons();
+    // counting sort of the creature slots by the block they start the step in
+    private void bucketAgents(int livingAtStart) {
+        countBlocks(position, livingAtStart);
+        for (int agent = 0; agent < livingAtStart; agent++) {
+            order[blockStart[blockOf(position[agent])]++] = agent;
+        }
+        shiftBlockStarts();
+    }
 
-        newCell.setState(state);
-        newCell.setTime(time);
-        newCell.setChronons(sharkEnergy);
+    // sets blockStart to where each block's share of the first count cells starts
+    private void countBlocks(int[] cells, int count) {
+        if (blockStart == null) {
+            blockRows = (watorWorldGrid.getRows() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            blockCols = (watorWorldGrid.getCols() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            blockStart = new int[blockRows * blockCols + 1];
+        }
+        Arrays.fill(blockStart, 0);
+        for (int i = 0; i < count; i++) {
+            blockStart[blockOf(cells[i]) + 1]++;
+        }
+        for (int block = 0; block < blockRows * blockCols; block++) {
+            blockStart[block + 1] += blockStart[block];
+        }
+    }
+
+    // the fill pass moved every start up to the next block's, shift them back
+    private void shiftBlockStarts() {
+        for (int block = blockRows * blockCols; block > 0; block--) {
+            blockStart[block] = blockStart[block - 1];
+        }
+        blockStart[0] = 0;
+    }
+
+    private int blockOf(int cell) {
+        return watorWorldGrid.rowOf(cell) / BLOCK_SIZE * blockCols
+            + watorWorldGrid.colOf(cell) / BLOCK_SIZE;
+    }
 
-        oldCell.setState(EMPTY);
-        oldCell.setTime(resetTime);
+    private int phaseOf(int cell) {
+        return watorWorldGrid.rowOf(cell) / BLOCK_SIZE % 2 * 2
+            + watorWorldGrid.colOf(cell) / BLOCK_SIZE % 2;
     }
 
-    private void sharkReproduce(Cell oldCell, Cell shark) {
-        if (shark.getTime() == reproductionThresh && shark.getMyState() == SHARK) {
-            oldCell.setState(SHARK);
-            shark.setTime(resetTime);
+    // whether the scan reaches the neighboring target after the cell; neighbors in the same phase
+    // are always in the same block
+    private boolean scannedAfter(int cell, int target) {
+        if (getThreadCount() > 1 && phaseOf(target) != phaseOf(cell)) {
+            return phaseOf(target) > phaseOf(cell);
         }
+        return target > cell;
     }
 
-    private void fishReproduce(Cell oldCell, Cell fish) {
-        if (fish.getTime() == reproductionThresh) {
-            oldCell.setState(FISH);
-            fish.setTime(resetTime);
+    // a cell that held a creature always holds one when the scan reaches it, since only the
+    // creature's own visit moves it out and anything moving in replaces it
+    private void cellMoves(int cell) {
+        int agent = agentAt[cell];
+        energy[agent]--;
+        if (energy[agent] == 0) {
+            removeAgent(agent);
+            return;
+        }
+        int direction = directions[cell];
+        if (direction == -1) {
+            return;
+        }
+        int target = cell + neighborhood.offset(direction);
+        if (agentAt[target] != NO_AGENT) {
+            removeAgent(agentAt[target]);
+        }
+        swimTo(agent, target);
+        energy[agent] = sharkEnergy;
+        if (directions[target] == NOT_VISITED && scannedAfter(cell, target)) {
+            // the scan still passes the empty cell this step and takes its chronon
+            energy[agent]--;
         }
     }
 
-    // see where the fish moves, if at all
-    // direction = 0, right; direction = 1, left; direction = 2, up; direction = 3, down
-    private HashMap<Integer, Integer> fishDirectionOptions(Cell[][] watorWorldGrid, int row, int col) {
-        int[] neighbors = watorWorldGrid[row][col].neighborStatus(watorWorldGrid, row, col, watorWorldGrid.length, watorWorldGrid[0].length);
-        HashMap <Integer, Integer> places = new HashMap<>();
+    // see where the creature in the cell moves, if at all: a fish to an empty neighbor, a shark to
+    // an empty or fish neighbor
+    private int getDirection(int cell) {
+        byte[] states = watorWorldGrid.current();
+        int options = neighborhood.matchVonNeumann(states, cell, EMPTY);
+        if (states[cell] == SHARK) {
+            options |= neighborhood.matchVonNeumann(states, cell, FISH);
+        }
+        return fishSharkDirection(cell, options);
+    }
 
-        for (int i = 0; i < numberNeighbors; i++){
-            if (neighbors[i] == EMPTY) {
-                places.put(i, neighbors[i]);
+    // moves every creature alive at the start of the step once, in a seeded shuffled order, or
+    // block by block in phases when there are several threads
+    private void updateWithBreeding(int livingAtStart) {
+        reserveBirths(livingAtStart);
+        if (getThreadCount() > 1) {
+            bucketAgents(livingAtStart);
+            updateInPhases(livingAtStart);
+        } else {
+            shuffleOrder(livingAtStart);
+            for (int i = 0; i < livingAtStart; i++) {
+                agentMoves(order[i], livingAtStart);
             }
         }
-        // System.out.println(places);
-        return places;
     }
 
-    // see where the shark move, if at all
-    private HashMap<Integer, Integer> sharkDirectionOptions(Cell[][] watorWorldGrid, int row, int col) {
-        int[] neighbors = watorWorldGrid[row][col].neighborStatus(watorWorldGrid, row, col, watorWorldGrid.length, watorWorldGrid[0].length);
-        HashMap <Integer, Integer> places = new HashMap<>();
+    // every creature can leave at most one newborn, so creature i of the step gets slot
+    // livingAtStart + i for it and no two creatures ever append to the arrays at the same time
+    private void reserveBirths(int livingAtStart) {
+        if (position.length < 2 * livingAtStart) {
+            resizeAgents(2 * livingAtStart);
+        }
+        Arrays.fill(type, livingAtStart, 2 * livingAtStart, EMPTY);
+        agentCount = 2 * livingAtStart;
+    }
+
+    private void agentMoves(int agent, int livingAtStart) {
+        if (type[agent] == FISH) {
+            fishMoves(agent, livingAtStart + agent);
+        } else if (type[agent] == SHARK) {
+            sharkMoves(agent, livingAtStart + agent);
+        }
+    }
+
+    // shuffles and moves the creatures of one block, keyed by the block so any thread gives the
+    // same order
+    private void blockMoves(int block, int livingAtStart) {
+        int start = blockStart[block];
+        for (int i = blockStart[block + 1] - 1; i > start; i--) {
+            int j = start + randomInt(block, i - start, BLOCK_STREAM, i - start + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        for (int i = start; i < blockStart[block + 1]; i++) {
+            agentMoves(order[i], livingAtStart);
+        }
+    }
+
+    // Fisher-Yates over the slots, keyed by the step and the slot so a seed replays the same order
+    private void shuffleOrder(int size) {
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = randomInt(i, 0, SHUFFLE_STREAM, i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+    }
 
-        for (int i = 0; i < numberNeighbors; i++){
-            if (neighbors[i] == EMPTY || neighbors[i] == FISH) {
-                places.put(i, neighbors[i]);
+    private void fishMoves(int agent, int birthSlot) {
+        int cell = position[agent];
+        byte[] states = watorWorldGrid.current();
+        age[agent]++;
+        int direction = fishSharkDirection(cell, neighborhood.matchVonNeumann(states, cell, EMPTY));
+        if (direction != -1) {
+            swimTo(agent, cell + neighborhood.offset(direction));
+            breed(agent, cell, fishBreedTime, birthSlot);
+        }
+    }
+
+    private void sharkMoves(int agent, int birthSlot) {
+        int cell = position[agent];
+        byte[] states = watorWorldGrid.current();
+        age[agent]++;
+        energy[agent]--;
+        if (energy[agent] <= 0) {
+            removeAgent(agent);
+            return;
+        }
+        int options = neighborhood.matchVonNeumann(states, cell, FISH);
+        if (options == 0) {
+            options = neighborhood.matchVonNeumann(states, cell, EMPTY);
+        }
+        int direction = fishSharkDirection(cell, options);
+        if (direction != -1) {
+            int target = cell + neighborhood.offset(direction);
+            if (states[target] == FISH) {
+                removeAgent(agentAt[target]);
+                energy[agent] += energyPerFish;
             }
+            swimTo(agent, target);
+            breed(agent, cell, sharkBreedTime, birthSlot);
         }
-        return places;
     }
 
-    private int fishSharkDirection(HashMap<Integer, Integer> directionOptions) {
-        int direction = 0;
-        if (directionOptions.isEmpty()) {
-            direction = -1;
-        } else {
-            ArrayList<Integer> randomDirection = new ArrayList<Integer>(directionOptions.keySet());
-            Random r = new Random();
-            direction = randomDirection.get(r.nextInt(randomDirection.size()));
+    // leaves a newborn in the cell the creature just left once it is old enough
+    private void breed(int agent, int leftCell, int breedTime, int birthSlot) {
+        if (age[agent] >= breedTime) {
+            age[agent] = 0;
+            placeAgent(birthSlot, type[agent], leftCell);
         }
-        // System.out.println(direction);
-        return direction;
     }
 
-    private int getDirection(int row, int col) {
-        int direction = 0;
-        HashMap<Integer, Integer> options;
+    private void swimTo(int agent, int target) {
+        byte[] states = watorWorldGrid.current();
+        int cell = position[agent];
+        logChange(target, states[target]);
+        logChange(cell, states[cell]);
+        states[target] = states[cell];
+        agentAt[target] = agent;
+        states[cell] = EMPTY;
+        agentAt[cell] = NO_AGENT;
+        position[agent] = target;
+    }
 
-        if (watorWorldGrid[row][col].getMyState() == FISH) {
-            options = fishDirectionOptions(watorWorldGrid, row, col);
-            direction = fishSharkDirection(options);
-        } else if (watorWorldGrid[row][col].getMyState() == SHARK) {
-            options = sharkDirectionOptions(watorWorldGrid, row, col);
-            direction = fishSharkDirection(options);
-        } else if (watorWorldGrid[row][col].getMyState() == EMPTY){
-            direction = -1;
+    // picks one of the directions in the mask, or -1 when there is nowhere to go
+    private int fishSharkDirection(int cell, int directionOptions) {
+        if (directionOptions == 0) {
+            return -1;
         }
-        return direction;
+        int choice = randomInt(watorWorldGrid.rowOf(cell), watorWorldGrid.colOf(cell),
+            DIRECTION_STREAM, Integer.bitCount(directionOptions));
+        return Neighborhood.nthDirection(directionOptions, choice);
     }
 
-    @Override
-    public void updateGrid() {
-        updateOnCycle(watorWorldGrid.length, watorWorldGrid[0].length);
+    // drops the eaten and starved, keeping the survivors and newborns in the same relative order
+    private void compactAgents() {
+        int alive = 0;
+        for (int agent = 0; agent < agentCount; agent++) {
+            if (type[agent] == EMPTY) {
+                continue;
+            }
+            position[alive] = position[agent];
+            type[alive] = type[agent];
+            age[alive] = age[agent];
+            energy[alive] = energy[agent];
+            agentAt[position[alive]] = alive;
+            alive++;
+        }
+        agentCount = alive;
+    }
 
-        for (int row = 0; row < watorWorldGrid.length; row++) {
-            for (int col = 0; col < watorWorldGrid[row].length; col++) {
+    /**
+     * @return the number of fish and sharks in the ocean
+     */
+    public int getAgentCount() {
+        return agentCount;
+    }
 
-                System.out.print(watorWorldGrid[row][col].getMyState() + ", ");
+    // on the default rules, swaps the creature in a cell put back by a rewind for a new one of the
+    // restored type, whose chronons undoExtra puts back; with breeding undoExtra rebuilds them all
+    @Override
+    protected void restoreState(int row, int col, int state) {
+        if (breeding) {
+            super.restoreState(row, col, state);
+            return;
+        }
+        int cell = watorWorldGrid.index(row, col);
+        if (agentAt[cell] != NO_AGENT) {
+            removeAgent(agentAt[cell]);
+        }
+        super.restoreState(row, col, state);
+        if (state == FISH || state == SHARK) {
+            addAgent(state, cell);
+        }
+    }
 
+    @Override
+    protected void undoExtra(int[] values) {
+        if (breeding) {
+            undoBreedingStep(values);
+            return;
+        }
+        // every step logs the cell and chronons of each creature alive at its start; going through
+        // them from the newest back leaves every creature with its chronons from the oldest step
+        for (int i = values.length - 2; i >= 0; i -= 2) {
+            int agent = agentAt[values[i]];
+            if (agent != NO_AGENT) {
+                energy[agent] = values[i + 1];
             }
-            System.out.println();
         }
+        compactAgents();
+    }
+
+    // every step logs the cell, age and energy of each creature alive at its start, in slot order,
+    // so the creatures are put back exactly as that step found them, slot order and all
+    private void undoBreedingStep(int[] values) {
+        for (int agent = 0; agent < agentCount; agent++) {
+            agentAt[position[agent]] = NO_AGENT;
+        }
+        agentCount = values.length / 3;
+        if (position.length < agentCount) {
+            resizeAgents(agentCount);
+        }
+        byte[] states = watorWorldGrid.current();
+        for (int agent = 0; agent < agentCount; agent++) {
+            position[agent] = values[3 * agent];
+            type[agent] = states[position[agent]];
+            age[agent] = values[3 * agent + 1];
+            energy[agent] = values[3 * agent + 2];
+            agentAt[position[agent]] = agent;
+        }
+    }
+
+    // the creatures in slot order, with their ages and energies
+    @Override
+    protected void writeExtraState(DataOutput out) throws IOException {
+        out.writeInt(agentCount);
+        writeInts(out, position, agentCount);
+        writeInts(out, type, agentCount);
+        writeInts(out, age, agentCount);
+        writeInts(out, energy, agentCount);
+    }
+
+    // replaces the row major creatures of the constructor with the saved ones
+    @Override
+    protected void readExtraState(DataInput in) throws IOException {
+        agentCount = in.readInt();
+        if (position.length < agentCount) {
+            resizeAgents(agentCount);
+        }
+        readInts(in, position, agentCount);
+        readInts(in, type, agentCount);
+        readInts(in, age, agentCount);
+        readInts(in, energy, agentCount);
+        Arrays.fill(agentAt, NO_AGENT);
+        for (int agent = 0; agent < agentCount; agent++) {
+            agentAt[position[agent]] = agent;
+        }
+    }
+
+    @Override
+    public void updateGrid() {
+        updateOnCycle();
+        advanceStep();
     }
 
     @Override
     public String getCellState(int row, int col, boolean intValue){
-        if(watorWorldGrid[row][col].getMyState() == 0){
+        int state = watorWorldGrid.getState(row, col);
+        if(state == 0){
             return intValue ? "0" : "EMPTY";
         }
-        else if(watorWorldGrid[row][col].getMyState() == 1){
+        else if(state == 1){
             return intValue ? "1" : "FISH";
         }
         else{
@@ -234,4 +631,3 @@ public class WatorWorld<memo> extends GridClass {
 
     }
 }
-
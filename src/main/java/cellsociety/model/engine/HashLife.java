@@ -0,0 +1,459 @@
+package cellsociety.model.engine;
+
+/**
+ * HashLife engine for the Game of Life
+ * <p>
+ * Purpose: Runs Game of Life on a canonicalized quadtree. Identical squares of cells anywhere in
+ * the universe share one node (hash consing), and the future of every node's center is memoized,
+ * so repetitive patterns can be advanced by 2^k generations at once in far less than 2^k steps of
+ * work. This is what makes generation 10^6 and beyond reachable.
+ * <p>
+ * Assumptions: Cells are either dead or alive. Unlike the padded GameOfLife grid, the universe is
+ * unbounded: patterns that reach the edge of the configured grid keep going instead of dying at
+ * the BLOCKED border. Universe coordinates line up with the configured grid, so (0, 0) is the top
+ * left cell of the initial configuration and coordinates can grow negative.
+ * <p>
+ * Dependencies: None besides java.lang.
+ * <p>
+ * Example: GameOfLife switches to a HashLife when asked to advance by a power of two and then reads
+ * the region it displays with window(top, left, rows, cols).
+ * <p>
+ * Misc: Memory is bounded by collecting the node table whenever it grows past the node budget,
+ * also in the middle of an advance: only nodes reachable from the universe are kept and the
+ * memoized results are dropped, to be rebuilt as needed. The nodes an advance is still working on
+ * stay valid, they just lose their memoized results and may be built again. When the universe
+ * alone holds more nodes than the budget, the next collection waits until the table has doubled,
+ * so the table never holds more than the larger of the budget and twice the universe's nodes.
+ * Universe coordinates are longs, so the universe grows to at most 2^MAX_LEVEL cells on a side
+ * and one advance covers at most 2^MAX_EXPONENT generations.
+ *
+ * @author ERIC XIE
+ */
+
+public class HashLife {
+
+  public static final int DEFAULT_NODE_BUDGET = 2_000_000;
+  // largest side of the universe, 2^MAX_LEVEL, so every coordinate and size fits in a long
+  public static final int MAX_LEVEL = 62;
+  // an advance needs a universe 2^3 times wider than the generations it covers
+  public static final int MAX_EXPONENT = MAX_LEVEL - 3;
+  private static final int MIN_ROOT_LEVEL = 3;
+  private static final int INITIAL_TABLE_SIZE = 1 << 16;
+
+  private final int myNodeBudget;
+  private int myCollectAt; // node count that triggers the next collection
+  private final Node myDeadLeaf = new Node(0);
+  private final Node myAliveLeaf = new Node(1);
+  private Node[] myEmptyNodes = new Node[0];
+  private Node[] myTable = new Node[INITIAL_TABLE_SIZE];
+  private int myNodeCount;
+  private long myNextId = 2;
+  private int myEpoch;
+
+  private Node myRoot;
+  private long myOriginRow;
+  private long myOriginCol;
+  private long myGeneration;
+
+  // one square of the universe: a leaf cell at level 0, otherwise four children of level - 1
+  private static final class Node {
+
+    private final int level;
+    private final Node nw;
+    private final Node ne;
+    private final Node sw;
+    private final Node se;
+    private final long population;
+    private final long id;
+    private final int hash;
+    private Node chain;
+    private Node result;
+    private int resultStep = -1;
+    private int mark;
+
+    // creates a leaf cell, 1 for alive and 0 for dead, which doubles as its id
+    private Node(long alive) {
+      level = 0;
+      nw = null;
+      ne = null;
+      sw = null;
+      se = null;
+      population = alive;
+      id = alive;
+      hash = (int) alive;
+    }
+
+    private Node(Node nw, Node ne, Node sw, Node se, long id, int hash) {
+      this.level = nw.level + 1;
+      this.nw = nw;
+      this.ne = ne;
+      this.sw = sw;
+      this.se = se;
+      this.population = nw.population + ne.population + sw.population + se.population;
+      this.id = id;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * Purpose: Builds a universe from a Game of Life grid with the default node budget
+   *
+   * @param inputData the grid, indexed [row][col]; only cells equal to 1 are alive
+   */
+  public HashLife(int[][] inputData) {
+    this(inputData, DEFAULT_NODE_BUDGET);
+  }
+
+  /**
+   * Purpose: Builds a universe from a Game of Life grid
+   *
+   * @param inputData  the grid, indexed [row][col]; only cells equal to 1 are alive
+   * @param nodeBudget how many canonical nodes may be kept before unreachable ones are collected
+   */
+  public HashLife(int[][] inputData, int nodeBudget) {
+    myNodeBudget = nodeBudget;
+    myCollectAt = nodeBudget;
+    int size = Math.max(inputData.length, inputData[0].length);
+    int level = MIN_ROOT_LEVEL;
+    while ((1L << level) < size) {
+      level++;
+    }
+    myRoot = build(inputData, level, 0, 0);
+  }
+
+  // recursively builds the canonical node covering a square of the input grid
+  private Node build(int[][] inputData, int level, int top, int left) {
+    if (top >= inputData.length || left >= inputData[0].length) {
+      return empty(level);
+    }
+    if (level == 0) {
+      return inputData[top][left] == 1 ? myAliveLeaf : myDeadLeaf;
+    }
+    int half = 1 << (level - 1);
+    return node(build(inputData, level - 1, top, left),
+        build(inputData, level - 1, top, left + half),
+        build(inputData, level - 1, top + half, left),
+        build(inputData, level - 1, top + half, left + half));
+  }
+
+  /**
+   * @return the number of generations the universe has been advanced
+   */
+  public long getGeneration() {
+    return myGeneration;
+  }
+
+  /**
+   * @return the number of live cells in the whole universe
+   */
+  public long getPopulation() {
+    return myRoot.population;
+  }
+
+  /**
+   * @return the number of canonical nodes currently kept in the node table
+   */
+  public int getNodeCount() {
+    return myNodeCount;
+  }
+
+  /**
+   * Purpose: Advances the whole universe by 2^exponent generations at once
+   * <p>
+   * Assumptions: The universe is padded first, so nothing that can be reached in 2^exponent
+   * generations is ever cut off.
+   * <p>
+   * Exceptions: IllegalArgumentException when the exponent is negative or above MAX_EXPONENT, or
+   * the generation count would overflow; IllegalStateException when the pattern has spread so far
+   * that the padded universe would be wider than 2^MAX_LEVEL cells, in which case the universe is
+   * left as it was
+   *
+   * @param exponent the base 2 logarithm of the number of generations to advance
+   */
+  public void advance(int exponent) {
+    if (exponent < 0 || exponent > MAX_EXPONENT) {
+      throw new IllegalArgumentException(
+          "Can only advance by 2^0 to 2^" + MAX_EXPONENT + " generations, not 2^" + exponent);
+    }
+    if (myGeneration > Long.MAX_VALUE - (1L << exponent)) {
+      throw new IllegalArgumentException("Advancing by 2^" + exponent
+          + " generations would overflow the generation count " + myGeneration);
+    }
+    // one expand empties the border, the rest only reach the level, then one more pads the result
+    int level = Math.max(myRoot.level + (borderIsEmpty(myRoot) ? 0 : 1), exponent + 2) + 1;
+    if (level > MAX_LEVEL) {
+      throw new IllegalStateException("The universe cannot grow past 2^" + MAX_LEVEL + " cells");
+    }
+    while (myRoot.level < exponent + 2 || !borderIsEmpty(myRoot)) {
+      expand();
+    }
+    expand();
+    myRoot = successor(myRoot, exponent);
+    long quarter = 1L << (myRoot.level - 1);
+    myOriginRow += quarter;
+    myOriginCol += quarter;
+    myGeneration += 1L << exponent;
+    collectIfFull();
+  }
+
+  /**
+   * Purpose: Gets a single cell of the universe
+   *
+   * @param row universe row, 0 being the first row of the initial configuration
+   * @param col universe column
+   * @return 1 if the cell is alive, 0 otherwise
+   */
+  public int get(long row, long col) {
+    long size = 1L << myRoot.level;
+    long r = row - myOriginRow;
+    long c = col - myOriginCol;
+    if (r < 0 || c < 0 || r >= size || c >= size) {
+      return 0;
+    }
+    Node node = myRoot;
+    while (node.level > 0 && node.population > 0) {
+      long half = 1L << (node.level - 1);
+      boolean south = r >= half;
+      boolean east = c >= half;
+      node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+      r -= south ? half : 0;
+      c -= east ? half : 0;
+    }
+    return (int) node.population;
+  }
+
+  /**
+   * Purpose: Extracts a rectangular window of the universe, e.g. the region a GridView shows.
+   * Empty parts of the quadtree are skipped, so sparse windows are cheap.
+   *
+   * @param top    universe row of the window's first row
+   * @param left   universe column of the window's first column
+   * @param height number of rows in the window
+   * @param width  number of columns in the window
+   * @return the window's cells row by row, 1 for alive and 0 for dead
+   */
+  public byte[] window(long top, long left, int height, int width) {
+    byte[] cells = new byte[height * width];
+    fillWindow(myRoot, myOriginRow, myOriginCol, top, left, height, width, cells);
+    return cells;
+  }
+
+  // copies the live cells of a node that overlap the window into the window buffer
+  private void fillWindow(Node node, long nodeTop, long nodeLeft, long top, long left, int height,
+      int width, byte[] cells) {
+    long size = 1L << node.level;
+    if (node.population == 0 || nodeTop >= top + height || nodeLeft >= left + width
+        || nodeTop + size <= top || nodeLeft + size <= left) {
+      return;
+    }
+    if (node.level == 0) {
+      cells[(int) (nodeTop - top) * width + (int) (nodeLeft - left)] = 1;
+      return;
+    }
+    long half = size / 2;
+    fillWindow(node.nw, nodeTop, nodeLeft, top, left, height, width, cells);
+    fillWindow(node.ne, nodeTop, nodeLeft + half, top, left, height, width, cells);
+    fillWindow(node.sw, nodeTop + half, nodeLeft, top, left, height, width, cells);
+    fillWindow(node.se, nodeTop + half, nodeLeft + half, top, left, height, width, cells);
+  }
+
+  // doubles the universe around its center, keeping every cell's universe coordinates
+  private void expand() {
+    Node border = empty(myRoot.level - 1);
+    Node root = myRoot;
+    myRoot = node(node(border, border, border, root.nw), node(border, border, root.ne, border),
+        node(border, root.sw, border, border), node(root.se, border, border, border));
+    long quarter = 1L << (root.level - 1);
+    myOriginRow -= quarter;
+    myOriginCol -= quarter;
+  }
+
+  // checks that every live cell of a node lies in its center half
+  private boolean borderIsEmpty(Node node) {
+    return node.population == node.nw.se.population + node.ne.sw.population
+        + node.sw.ne.population + node.se.nw.population;
+  }
+
+  // the level - 1 center of a node advanced by 2^step generations, with step <= level - 2
+  private Node successor(Node node, int step) {
+    if (node.population == 0) {
+      return empty(node.level - 1);
+    }
+    if (node.result != null && node.resultStep == step) {
+      return node.result;
+    }
+    collectIfFull();
+    Node result;
+    if (node.level == 2) {
+      result = baseCase(node);
+    } else {
+      Node n00 = node.nw;
+      Node n01 = node(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw);
+      Node n02 = node.ne;
+      Node n10 = node(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne);
+      Node n11 = node(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+      Node n12 = node(node.ne.sw, node.ne.se, node.se.nw, node.se.ne);
+      Node n20 = node.sw;
+      Node n21 = node(node.sw.ne, node.se.nw, node.sw.se, node.se.sw);
+      Node n22 = node.se;
+      boolean fullSpeed = step == node.level - 2;
+      Node r00 = fullSpeed ? successor(n00, step - 1) : center(n00);
+      Node r01 = fullSpeed ? successor(n01, step - 1) : center(n01);
+      Node r02 = fullSpeed ? successor(n02, step - 1) : center(n02);
+      Node r10 = fullSpeed ? successor(n10, step - 1) : center(n10);
+      Node r11 = fullSpeed ? successor(n11, step - 1) : center(n11);
+      Node r12 = fullSpeed ? successor(n12, step - 1) : center(n12);
+      Node r20 = fullSpeed ? successor(n20, step - 1) : center(n20);
+      Node r21 = fullSpeed ? successor(n21, step - 1) : center(n21);
+      Node r22 = fullSpeed ? successor(n22, step - 1) : center(n22);
+      int remaining = fullSpeed ? step - 1 : step;
+      result = node(successor(node(r00, r01, r10, r11), remaining),
+          successor(node(r01, r02, r11, r12), remaining),
+          successor(node(r10, r11, r20, r21), remaining),
+          successor(node(r11, r12, r21, r22), remaining));
+    }
+    node.result = result;
+    node.resultStep = step;
+    return result;
+  }
+
+  // the level - 1 center of a node without advancing it
+  private Node center(Node node) {
+    return node(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+  }
+
+  // runs one generation of the 4x4 cells of a level 2 node, returning its 2x2 center
+  private Node baseCase(Node node) {
+    int bits = 0;
+    Node[] quadrants = {node.nw, node.ne, node.sw, node.se};
+    for (int q = 0; q < quadrants.length; q++) {
+      int rowOffset = (q / 2) * 2;
+      int colOffset = (q % 2) * 2;
+      Node[] leaves = {quadrants[q].nw, quadrants[q].ne, quadrants[q].sw, quadrants[q].se};
+      for (int l = 0; l < leaves.length; l++) {
+        if (leaves[l].population == 1) {
+          bits |= 1 << ((rowOffset + l / 2) * 4 + colOffset + l % 2);
+        }
+      }
+    }
+    return node(lifeRule(bits, 1, 1), lifeRule(bits, 1, 2), lifeRule(bits, 2, 1),
+        lifeRule(bits, 2, 2));
+  }
+
+  // applies the Game of Life rule to one cell of a 4x4 bit block
+  private Node lifeRule(int bits, int row, int col) {
+    int alive = 0;
+    for (int dr = -1; dr <= 1; dr++) {
+      for (int dc = -1; dc <= 1; dc++) {
+        if ((dr != 0 || dc != 0) && ((bits >> ((row + dr) * 4 + col + dc)) & 1) == 1) {
+          alive++;
+        }
+      }
+    }
+    boolean self = ((bits >> (row * 4 + col)) & 1) == 1;
+    return alive == 3 || (alive == 2 && self) ? myAliveLeaf : myDeadLeaf;
+  }
+
+  // the canonical empty node of a level
+  private Node empty(int level) {
+    if (level >= myEmptyNodes.length) {
+      Node[] grown = new Node[level + 1];
+      System.arraycopy(myEmptyNodes, 0, grown, 0, myEmptyNodes.length);
+      for (int i = myEmptyNodes.length; i <= level; i++) {
+        grown[i] = i == 0 ? myDeadLeaf : null;
+      }
+      myEmptyNodes = grown;
+    }
+    if (myEmptyNodes[level] == null) {
+      Node child = empty(level - 1);
+      myEmptyNodes[level] = node(child, child, child, child);
+    }
+    return myEmptyNodes[level];
+  }
+
+  // the canonical node with the given children, created only if it does not exist yet
+  private Node node(Node nw, Node ne, Node sw, Node se) {
+    int hash = hash(nw, ne, sw, se);
+    int bucket = hash & (myTable.length - 1);
+    for (Node candidate = myTable[bucket]; candidate != null; candidate = candidate.chain) {
+      if (candidate.nw == nw && candidate.ne == ne && candidate.sw == sw && candidate.se == se) {
+        return candidate;
+      }
+    }
+    Node created = new Node(nw, ne, sw, se, myNextId++, hash);
+    insert(created);
+    return created;
+  }
+
+  // mixes the ids of four children into a table hash
+  private static int hash(Node nw, Node ne, Node sw, Node se) {
+    long h = nw.id * 0x9E3779B97F4A7C15L;
+    h = (h ^ ne.id) * 0xC2B2AE3D27D4EB4FL;
+    h = (h ^ sw.id) * 0x165667B19E3779F9L;
+    h = (h ^ se.id) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // adds a node to the table, growing it when it gets crowded
+  private void insert(Node node) {
+    if (myNodeCount >= myTable.length - (myTable.length >> 2)) {
+      Node[] old = myTable;
+      myTable = new Node[old.length * 2];
+      myNodeCount = 0;
+      for (Node head : old) {
+        for (Node current = head; current != null; ) {
+          Node following = current.chain;
+          link(current);
+          current = following;
+        }
+      }
+    }
+    link(node);
+  }
+
+  // puts a node at the front of its bucket
+  private void link(Node node) {
+    int bucket = node.hash & (myTable.length - 1);
+    node.chain = myTable[bucket];
+    myTable[bucket] = node;
+    myNodeCount++;
+  }
+
+  // collects once the table passes the budget, see the class comment
+  private void collectIfFull() {
+    if (myNodeCount > myCollectAt) {
+      collect();
+    }
+  }
+
+  /**
+   * Purpose: Drops every node that is no longer reachable from the universe, along with all
+   * memoized results, so the node table shrinks back below the budget
+   */
+  public void collect() {
+    myEpoch++;
+    myTable = new Node[INITIAL_TABLE_SIZE];
+    myNodeCount = 0;
+    keep(myRoot);
+    for (Node emptyNode : myEmptyNodes) {
+      keep(emptyNode);
+    }
+    myCollectAt = Math.max(myNodeBudget, 2 * myNodeCount);
+  }
+
+  // re-inserts a reachable node and its descendants into the fresh table
+  private void keep(Node node) {
+    if (node == null || node.level == 0 || node.mark == myEpoch) {
+      return;
+    }
+    node.mark = myEpoch;
+    node.result = null;
+    node.resultStep = -1;
+    keep(node.nw);
+    keep(node.ne);
+    keep(node.sw);
+    keep(node.se);
+    insert(node);
+  }
+
+}
@@ -0,0 +1,264 @@
+package cellsociety.model.engine;
+
+import cellsociety.model.unit.ChangeLog;
+import cellsociety.model.unit.TileTracker;
+
+/**
+ * Bit packed Game of Life engine
+ * <p>
+ * Purpose: Stores a two state Game of Life grid as bits packed 64 cells to a long and computes the
+ * next generation with bit-parallel adders, so one pass of word operations updates 64 cells at a
+ * time instead of one.
+ * <p>
+ * Assumptions: Every cell is either EMPTY (0) or ALIVE (1). Everything outside the grid is treated
+ * as dead, which is exactly how the BLOCKED padding around GameOfLife behaves since BLOCKED cells
+ * are never alive and never updated. Bits past the last column are always kept at 0.
+ * <p>
+ * Dependencies: None besides java.lang, GameOfLife decides when to use it.
+ * <p>
+ * Example: GameOfLife creates a PackedLife whenever the initial configuration only contains EMPTY
+ * and ALIVE cells, calls step() for every updateGrid() and reads cells back with get(row, col).
+ * <p>
+ * Misc: Each row is padded with one zero word on both sides and the grid with one zero row on the
+ * top and bottom, so the inner loop never has to check if a neighboring word exists. A TileTracker
+ * with tiles one word wide and TileTracker.DEFAULT_TILE_SIZE rows tall skips the words where nothing
+ * changed nearby last generation.
+ *
+ * @author ERIC XIE
+ */
+
+public class PackedLife {
+
+  private static final int WORD_BITS = 64;
+
+  private final int myRows;
+  private final int myCols;
+  private final int myWords;
+  private final int myStride;
+  private final long myLastWordMask;
+  private long[] myCurrent;
+  private long[] myNext;
+  private final TileTracker myTiles;
+
+  /**
+   * Purpose: Packs an initial configuration into bits
+   *
+   * @param inputData the initial grid, indexed [row][col], holding only 0s and 1s
+   */
+  public PackedLife(int[][] inputData) {
+    myRows = inputData.length;
+    myCols = inputData[0].length;
+    myWords = (myCols + WORD_BITS - 1) / WORD_BITS;
+    myStride = myWords + 2;
+    int leftover = myCols % WORD_BITS;
+    myLastWordMask = leftover == 0 ? -1L : (1L << leftover) - 1;
+    myCurrent = new long[(myRows + 2) * myStride];
+    myNext = new long[myCurrent.length];
+    myTiles = new TileTracker(myRows, myWords, TileTracker.DEFAULT_TILE_SIZE, 1);
+    for (int row = 0; row < myRows; row++) {
+      for (int col = 0; col < myCols; col++) {
+        if (inputData[row][col] == 1) {
+          myCurrent[wordIndex(row, col)] |= 1L << (col % WORD_BITS);
+        }
+      }
+    }
+  }
+
+  /**
+   * Purpose: Checks whether a configuration can be run by this engine
+   *
+   * @param inputData the initial grid of a Game of Life configuration
+   * @return true when every cell is EMPTY or ALIVE
+   */
+  public static boolean supports(int[][] inputData) {
+    for (int[] row : inputData) {
+      for (int state : row) {
+        if (state != 0 && state != 1) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param row a row of the grid
+   * @param col a column of the grid
+   * @return 1 if the cell is alive, 0 otherwise
+   */
+  public int get(int row, int col) {
+    return (int) (myCurrent[wordIndex(row, col)] >>> (col % WORD_BITS)) & 1;
+  }
+
+  /**
+   * Purpose: Sets a single cell of the current generation, waking up the tiles around it
+   *
+   * @param row   a row of the grid
+   * @param col   a column of the grid
+   * @param state 1 to make the cell alive, anything else to make it empty
+   */
+  public void set(int row, int col, int state) {
+    int index = wordIndex(row, col);
+    long bit = 1L << (col % WORD_BITS);
+    if (state == 1) {
+      myCurrent[index] |= bit;
+    } else {
+      myCurrent[index] &= ~bit;
+    }
+    myNext[index] = myCurrent[index];
+    myTiles.wake(row, col / WORD_BITS);
+  }
+
+  // finds the word holding a cell, skipping the padding row and padding word
+  private int wordIndex(int row, int col) {
+    return (row + 1) * myStride + 1 + col / WORD_BITS;
+  }
+
+  /**
+   * @return the number of rows in the grid
+   */
+  public int getRows() {
+    return myRows;
+  }
+
+  /**
+   * @return the number of columns in the grid
+   */
+  public int getCols() {
+    return myCols;
+  }
+
+  /**
+   * @return how many tiles the next generation will evaluate
+   */
+  public int getActiveTileCount() {
+    return myTiles.getActiveTileCount();
+  }
+
+  /**
+   * Purpose: Moves the whole grid forward one generation
+   */
+  public void step() {
+    stepTileRows(0, myTiles.getTileRows());
+    swap();
+  }
+
+  /**
+   * Purpose: Computes the next generation of a band of tile rows into the next buffer, skipping
+   * the tiles that cannot change. Bands only read the current buffer and only write their own rows
+   * and tiles, so different bands can be computed independently before swap() is called.
+   *
+   * @param fromTileRow first tile row of the band
+   * @param toTileRow   one past the last tile row of the band
+   */
+  public void stepTileRows(int fromTileRow, int toTileRow) {
+    for (int tileRow = fromTileRow; tileRow < toTileRow; tileRow++) {
+      for (int word = 0; word < myWords; word++) {
+        if (myTiles.isActive(tileRow, word) && stepTile(tileRow, word)) {
+          myTiles.markChanged(tileRow, word);
+        }
+      }
+    }
+  }
+
+  // computes the words of one tile, returning whether any of them changed
+  private boolean stepTile(int tileRow, int word) {
+    boolean changed = false;
+    long mask = word == myWords - 1 ? myLastWordMask : -1L;
+    for (int row = myTiles.firstRow(tileRow); row < myTiles.endRow(tileRow); row++) {
+      int index = (row + 1) * myStride + 1 + word;
+      myNext[index] = nextWord(index) & mask;
+      changed |= myNext[index] != myCurrent[index];
+    }
+    return changed;
+  }
+
+  /**
+   * Purpose: Adds every cell the generation computed by stepTileRows changes to the log, with its
+   * state before the step, looking only at the tiles that changed. Call it before swap().
+   *
+   * @param log where the changed cells go
+   */
+  public void logChanges(ChangeLog log) {
+    for (int tileRow = 0; tileRow < myTiles.getTileRows(); tileRow++) {
+      for (int word = 0; word < myWords; word++) {
+        if (!myTiles.isChanged(tileRow, word)) {
+          continue;
+        }
+        for (int row = myTiles.firstRow(tileRow); row < myTiles.endRow(tileRow); row++) {
+          int index = (row + 1) * myStride + 1 + word;
+          long changed = myCurrent[index] ^ myNext[index];
+          while (changed != 0) {
+            int bit = Long.numberOfTrailingZeros(changed);
+            log.add(row, word * WORD_BITS + bit, (int) (myCurrent[index] >>> bit) & 1);
+            changed &= changed - 1;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Purpose: Ends a step started with stepTileRows by making the next generation the current one
+   */
+  public void swap() {
+    long[] temp = myCurrent;
+    myCurrent = myNext;
+    myNext = temp;
+    myTiles.advance();
+  }
+
+  /**
+   * @return the number of tile rows, for splitting a step into bands
+   */
+  public int getTileRows() {
+    return myTiles.getTileRows();
+  }
+
+  // computes the next generation of the 64 cells in one word using a bit sliced neighbor count
+  private long nextWord(int index) {
+    long center = myCurrent[index];
+    int above = index - myStride;
+    int below = index + myStride;
+
+    // the eight neighbor words, each bit lined up with the cell it neighbors
+    long n0 = west(above);
+    long n1 = myCurrent[above];
+    long n2 = east(above);
+    long n3 = west(index);
+    long n4 = east(index);
+    long n5 = west(below);
+    long n6 = myCurrent[below];
+    long n7 = east(below);
+
+    // full adders reduce the eight one bit inputs to ones, twos and fours bit planes
+    long sumA = n0 ^ n1 ^ n2;
+    long carryA = (n0 & n1) | (n2 & (n0 ^ n1));
+    long sumB = n3 ^ n4 ^ n5;
+    long carryB = (n3 & n4) | (n5 & (n3 ^ n4));
+    long sumC = n6 ^ n7;
+    long carryC = n6 & n7;
+
+    long ones = sumA ^ sumB ^ sumC;
+    long carryD = (sumA & sumB) | (sumC & (sumA ^ sumB));
+
+    long pairs = carryA ^ carryB ^ carryC;
+    long carryE = (carryA & carryB) | (carryC & (carryA ^ carryB));
+    long twos = pairs ^ carryD;
+    long fours = carryE | (pairs & carryD);
+
+    // alive next generation with exactly 3 neighbors, or with 2 neighbors if already alive
+    return twos & ~fours & (ones | center);
+  }
+
+  // neighbor word to the west: every bit shows the cell one column to its left
+  private long west(int index) {
+    return (myCurrent[index] << 1) | (myCurrent[index - 1] >>> (WORD_BITS - 1));
+  }
+
+  // neighbor word to the east: every bit shows the cell one column to its right
+  private long east(int index) {
+    return (myCurrent[index] >>> 1) | (myCurrent[index + 1] << (WORD_BITS - 1));
+  }
+
+}
@@ -0,0 +1,116 @@
+package cellsociety.model.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel band stepper
+ * <p>
+ * Purpose: Splits the rows (or tile rows) of a grid into bands and computes the bands at the same
+ * time on a ForkJoinPool. The double buffered simulations only read the current generation and
+ * each band only writes its own cells of the next generation, so the bands never need to talk to
+ * each other and the result is identical to stepping the bands one after another.
+ * <p>
+ * Assumptions: The work handed to forEachBand only writes state owned by its own band. Rules that
+ * draw random numbers must not share one generator between bands.
+ * <p>
+ * Dependencies: java.util.concurrent
+ * <p>
+ * Example: GridClass.setThreadCount(8) makes stepActiveTiles hand its tile rows to
+ * ParallelStepper.forThreads(8).forEachBand(tileRows, this::stepTileRows).
+ * <p>
+ * Misc: Steppers are shared per thread count, so reloading or resetting a simulation does not start
+ * a new pool every time. The pool's threads are daemon threads and time out when idle.
+ *
+ * @author ERIC XIE
+ */
+
+public class ParallelStepper {
+
+  // bands per thread, so threads that finish early can steal the remaining work
+  private static final int BANDS_PER_THREAD = 4;
+  private static final Map<Integer, ParallelStepper> STEPPERS = new ConcurrentHashMap<>();
+
+  private final ForkJoinPool myPool;
+  private final int myThreads;
+
+  /**
+   * Work done on one band of rows
+   */
+  public interface Band {
+
+    /**
+     * @param from first row of the band
+     * @param to   one past the last row of the band
+     */
+    void step(int from, int to);
+  }
+
+  private ParallelStepper(int threads) {
+    myThreads = threads;
+    myPool = new ForkJoinPool(threads);
+  }
+
+  /**
+   * Purpose: Gets the shared stepper for a thread count
+   *
+   * @param threads number of worker threads, at least 2
+   * @return the stepper using that many threads
+   */
+  public static ParallelStepper forThreads(int threads) {
+    if (threads < 2) {
+      throw new IllegalArgumentException("A parallel stepper needs at least 2 threads");
+    }
+    return STEPPERS.computeIfAbsent(threads, ParallelStepper::new);
+  }
+
+  /**
+   * @return the number of worker threads
+   */
+  public int getThreads() {
+    return myThreads;
+  }
+
+  /**
+   * Purpose: Runs the band work over [0, size) split into bands and waits until every band is done
+   *
+   * @param size number of rows to cover
+   * @param band the work for one band
+   */
+  public void forEachBand(int size, Band band) {
+    int grain = Math.max(1, size / (myThreads * BANDS_PER_THREAD));
+    myPool.invoke(new BandAction(band, 0, size, grain));
+  }
+
+  // splits a range of rows in half until it is small enough to step directly
+  private static class BandAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Band myBand;
+    private final int myFrom;
+    private final int myTo;
+    private final int myGrain;
+
+    private BandAction(Band band, int from, int to, int grain) {
+      myBand = band;
+      myFrom = from;
+      myTo = to;
+      myGrain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom <= myGrain) {
+        myBand.step(myFrom, myTo);
+        return;
+      }
+      int middle = (myFrom + myTo) >>> 1;
+      invokeAll(new BandAction(myBand, myFrom, middle, myGrain),
+          new BandAction(myBand, middle, myTo, myGrain));
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+package cellsociety.model.engine;
+
+import cellsociety.model.unit.Neighborhood;
+import cellsociety.model.unit.RuleTable;
+
+/**
+ * Stencil kernel
+ * <p>
+ * Purpose: Steps a run of neighboring cells in one row of a StateGrid at once, so the work for a
+ * whole tile row can be done with SIMD instructions instead of one cell at a time. GridClass hands
+ * kernels every row of every active tile through stepActiveRows.
+ * <p>
+ * Assumptions: A kernel reads the current buffer and only writes the cells of its run in the next
+ * buffer, like the cell rules of stepActiveTiles, so runs can be stepped on any thread in any
+ * order.
+ * <p>
+ * Dependencies: RuleTable and Neighborhood to describe the rule. The vector kernel needs the
+ * jdk.incubator.vector module, which the application only requires statically: it is used when the
+ * JVM was started with --add-modules jdk.incubator.vector and the simulations keep their scalar
+ * cell by cell path otherwise.
+ * <p>
+ * Example: GameOfLife asks for StencilKernel.totalistic(rules, targets, neighborhood) and steps
+ * with stepActiveRows(kernel) when it got one, stepActiveTiles(this::checkStability) when not.
+ *
+ * @author ERIC XIE
+ */
+
+public interface StencilKernel {
+
+  String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /**
+   * Purpose: Computes the next state of the cells from index from to index to - 1
+   *
+   * @param current the current buffer of the grid
+   * @param next    the next buffer of the grid
+   * @param from    buffer index of the first cell of the run
+   * @param to      one past the buffer index of the last cell of the run
+   */
+  void stepRow(byte[] current, byte[] next, int from, int to);
+
+  /**
+   * @return whether the Vector API module was loaded into this JVM
+   */
+  static boolean vectorAvailable() {
+    return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+  }
+
+  /**
+   * Purpose: Compiles a totalistic Moore rule into a vector kernel. A cell in state s counts its
+   * eight neighbors in state targets[s] and turns into rules.next(s, count).
+   *
+   * @param rules        the rule, read with the state of the cell and the count
+   * @param targets      for every state of the rule, the neighbor state cells in it count
+   * @param neighborhood the neighbor offsets of the grid being stepped
+   * @return the kernel, or null when the Vector API is missing or its vectors are too short for
+   * the rule, in which case the caller steps cell by cell
+   */
+  static StencilKernel totalistic(RuleTable rules, byte[] targets, Neighborhood neighborhood) {
+    if (!vectorAvailable() || !VectorStencil.supports(rules.getStates())) {
+      return null;
+    }
+    return new VectorStencil(rules, targets, neighborhood);
+  }
+
+}
@@ -1,7 +1,5 @@
 package cellsociety.model.unit;
 
-import static java.lang.Boolean.FALSE;
-import static java.lang.Boolean.TRUE;
 /**
  * Cell class
  * <p>
@@ -40,50 +38,6 @@ public class Cell {
   }
 
 
-  // we get an array of the status of our neighbors, which is helpful in determining our own state based on the specific simulation rules
-  // important to note that neighbors on the diagonal are indexes 4-7 in the array
-  public int[] neighborStatus(Cell[][] inputGrid, int xCellCoord, int yCellCoord, int gridWidth, int gridHeight) {
-    int[] neighborStatuses = new int[8];
-
-    int [] [] dir = {{1,0},{-1,0},{0,1},{0,-1},{1,1},{-1,-1},{-1,1},{1,-1}};
-    for (int i = 0; i<dir.length; i++){
-      if (checkBoundaries(xCellCoord + dir[i][0], yCellCoord + dir[i][1], gridWidth, gridHeight)) {
-        neighborStatuses[i] = inputGrid[xCellCoord + dir[i][0]][yCellCoord + dir[i][1]].myState;
-      }
-      else {
-        neighborStatuses[i] = -1;
-      }
-    }
-
-    return neighborStatuses;
-  }
-
-  // checks to see what the next gen state the neighbors are for a rectangle
-  // same indexing as above for neighborStatus
-  public int[] neighborNextStatus(Cell[][] inputGrid, int xCellCoord, int yCellCoord, int gridWidth, int gridHeight) {
-    int[] neighborNextStatuses = new int[8];
-
-    int [] [] dir = {{1,0},{-1,0},{0,1},{0,-1},{1,1},{-1,-1},{-1,1},{1,-1}};
-    for (int i = 0; i<dir.length; i++){
-      if (checkBoundaries(xCellCoord + dir[i][0], yCellCoord + dir[i][1], gridWidth, gridHeight)) {
-        neighborNextStatuses[i] = inputGrid[xCellCoord + dir[i][0]][yCellCoord + dir[i][1]].nextGenState;
-      }
-      else {
-        neighborNextStatuses[i] = -1;
-      }
-    }
-    return neighborNextStatuses;
-  }
-
-  // check to see if neighbor cell actually exists in our grid
-  private boolean checkBoundaries(int xCoordinate, int yCoordinate, int gridWidth, int gridHeight) {
-    if (xCoordinate >= gridWidth || xCoordinate < 0 || yCoordinate >= gridHeight
-        || yCoordinate < 0) {
-      return FALSE;
-    }
-    return TRUE;
-  }
-
   // method that stores next state for the next generation of the simulation
   public void setNextGenState(int inputState) {
     nextGenState = inputState;
@@ -0,0 +1,181 @@
+package cellsociety.model.unit;
+
+import java.util.Arrays;
+
+/**
+ * ChangeLog class
+ * <p>
+ * Purpose: Collects the cells a simulation changes while it steps, each with the state it had
+ * before its first change, plus whatever numbers the simulation needs to undo the rest of what it
+ * keeps. A RewindBuffer reads it after every step, so undoing a step only costs as much as the
+ * step changed instead of the whole grid.
+ * <p>
+ * Assumptions: Every cell state fits in a byte. Cells are told apart by row and column, so a
+ * simulation can log cells from whichever engine holds them (a StateGrid or a packed grid).
+ * <p>
+ * Dependencies: None besides java.lang.
+ * <p>
+ * Example: GridClass.stepActiveRows adds every cell of a changed tile whose next state differs from
+ * its current one; WatorWorld adds the cells, ages and energies of its creatures with addExtra.
+ * <p>
+ * Misc: The cells are kept in an open addressing hash table next to the list of changes, so
+ * logging a cell a second time in the same step is a constant time lookup and clear() only walks
+ * the cells that were logged. A log is not thread safe: during a parallel step GridClass gives
+ * every band a log of its own and adds them to the step's log with addAll once the bands are done,
+ * so the threads never wait on each other to log.
+ *
+ * @author ERIC XIE
+ */
+
+public class ChangeLog {
+
+  private static final int NO_CHANGE = -1;
+  private static final int MIN_CAPACITY = 64;
+
+  private int[] myRows = new int[MIN_CAPACITY];
+  private int[] myCols = new int[MIN_CAPACITY];
+  private byte[] myStates = new byte[MIN_CAPACITY];
+  private int[] mySlots = new int[MIN_CAPACITY]; // where each change sits in myTable
+  private int[] myTable = newTable(2 * MIN_CAPACITY); // change number per slot, or NO_CHANGE
+  private int mySize;
+  private int[] myExtras = new int[MIN_CAPACITY];
+  private int myExtraSize;
+
+  /**
+   * Purpose: Logs that a cell is about to change from the given state; later changes of the same
+   * cell before clear() are ignored, so the log keeps the state from before all of them.
+   *
+   * @param row    row of the cell
+   * @param col    column of the cell
+   * @param before state of the cell before the change
+   */
+  public void add(int row, int col, int before) {
+    int slot = findSlot(row, col);
+    if (myTable[slot] != NO_CHANGE) {
+      return;
+    }
+    if (mySize == myRows.length) {
+      myRows = Arrays.copyOf(myRows, mySize * 2);
+      myCols = Arrays.copyOf(myCols, mySize * 2);
+      myStates = Arrays.copyOf(myStates, mySize * 2);
+      mySlots = Arrays.copyOf(mySlots, mySize * 2);
+    }
+    myRows[mySize] = row;
+    myCols[mySize] = col;
+    myStates[mySize] = (byte) before;
+    mySlots[mySize] = slot;
+    myTable[slot] = mySize++;
+    if (mySize * 2 > myTable.length) {
+      rehash(myTable.length * 2);
+    }
+  }
+
+  /**
+   * Purpose: Appends a number the simulation needs to undo what it keeps besides its cells
+   *
+   * @param value the number to keep
+   */
+  public void addExtra(int value) {
+    if (myExtraSize == myExtras.length) {
+      myExtras = Arrays.copyOf(myExtras, myExtraSize * 2);
+    }
+    myExtras[myExtraSize++] = value;
+  }
+
+  /**
+   * Purpose: Logs everything another log holds after what this one holds, as if its cells and
+   * numbers had been added here one by one
+   *
+   * @param other a log filled by a later part of the same step, left as it was
+   */
+  public void addAll(ChangeLog other) {
+    for (int change = 0; change < other.mySize; change++) {
+      add(other.myRows[change], other.myCols[change], other.myStates[change]);
+    }
+    for (int extra = 0; extra < other.myExtraSize; extra++) {
+      addExtra(other.myExtras[extra]);
+    }
+  }
+
+  /**
+   * @return the number of cells logged
+   */
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * @param change between 0 and size() - 1, in the order the cells were first logged
+   * @return the row of the logged cell
+   */
+  public int row(int change) {
+    return myRows[change];
+  }
+
+  /**
+   * @param change between 0 and size() - 1
+   * @return the column of the logged cell
+   */
+  public int col(int change) {
+    return myCols[change];
+  }
+
+  /**
+   * @param change between 0 and size() - 1
+   * @return the state the cell had before it was first logged
+   */
+  public int before(int change) {
+    return myStates[change];
+  }
+
+  /**
+   * @return a copy of the numbers added with addExtra, oldest first
+   */
+  public int[] extras() {
+    return Arrays.copyOf(myExtras, myExtraSize);
+  }
+
+  /**
+   * Purpose: Forgets everything logged, in time proportional to what was logged
+   */
+  public void clear() {
+    for (int change = 0; change < mySize; change++) {
+      myTable[mySlots[change]] = NO_CHANGE;
+    }
+    mySize = 0;
+    myExtraSize = 0;
+  }
+
+  // the slot holding the cell, or the empty slot it would go in
+  private int findSlot(int row, int col) {
+    int mask = myTable.length - 1;
+    int slot = hash(row, col) & mask;
+    while (myTable[slot] != NO_CHANGE
+        && (myRows[myTable[slot]] != row || myCols[myTable[slot]] != col)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    myTable = newTable(capacity);
+    for (int change = 0; change < mySize; change++) {
+      int slot = findSlot(myRows[change], myCols[change]);
+      mySlots[change] = slot;
+      myTable[slot] = change;
+    }
+  }
+
+  private static int[] newTable(int capacity) {
+    int[] table = new int[capacity];
+    Arrays.fill(table, NO_CHANGE);
+    return table;
+  }
+
+  // spreads nearby cells over the table
+  private static int hash(int row, int col) {
+    int mixed = (row * 0x9E3779B1 + col) * 0x85EBCA6B;
+    return mixed ^ (mixed >>> 15);
+  }
+
+}
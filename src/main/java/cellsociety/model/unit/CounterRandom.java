@@ -0,0 +1,97 @@
+package cellsociety.model.unit;
+
+/**
+ * CounterRandom class
+ * <p>
+ * Purpose: Counter based random numbers for the stochastic rules. Every draw is a pure function of
+ * (seed, step, row, col, stream): the key is scrambled with SplitMix64 style mixing instead of
+ * advancing a shared generator, so there is no state to fight over between threads and the result
+ * of a draw does not depend on the order cells or tiles are visited in.
+ * <p>
+ * Assumptions: A rule never needs two different draws with the same key; rules that draw more than
+ * once for a cell in the same step give each draw its own stream number (e.g. the direction of the
+ * neighbor being checked).
+ * <p>
+ * Dependencies: None besides java.lang, GridClass keeps the seed and the step counter.
+ * <p>
+ * Example: SpreadingFire decides if a tree catches from its burning neighbor in direction i with
+ * randomDouble(row, col, i) < probCatch, which GridClass turns into
+ * random.nextDouble(step, row, col, i).
+ * <p>
+ * Misc: The same seed always replays the same run, whatever the thread count.
+ *
+ * @author ERIC XIE
+ */
+
+public class CounterRandom {
+
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final long ROW_MULTIPLIER = 0xD1B54A32D192ED03L;
+  private static final long COL_MULTIPLIER = 0xABC98388FB8FAC03L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  private final long mySeed;
+
+  /**
+   * @param seed the seed every draw is derived from
+   */
+  public CounterRandom(long seed) {
+    mySeed = seed;
+  }
+
+  /**
+   * @return the seed every draw is derived from
+   */
+  public long getSeed() {
+    return mySeed;
+  }
+
+  /**
+   * Purpose: Gives 64 random bits for a key
+   *
+   * @param step   the step being computed
+   * @param row    row of the cell drawing
+   * @param col    column of the cell drawing
+   * @param stream which of the cell's draws in this step
+   * @return 64 well mixed bits
+   */
+  public long nextLong(long step, int row, int col, int stream) {
+    long h = mix(mySeed + GOLDEN_GAMMA * (step + 1));
+    h = mix(h ^ (row * ROW_MULTIPLIER) ^ (col * COL_MULTIPLIER));
+    return mix(h + GOLDEN_GAMMA * (stream + 1));
+  }
+
+  /**
+   * @param step   the step being computed
+   * @param row    row of the cell drawing
+   * @param col    column of the cell drawing
+   * @param stream which of the cell's draws in this step
+   * @return a uniform double in [0, 1) for the key
+   */
+  public double nextDouble(long step, int row, int col, int stream) {
+    return (nextLong(step, row, col, stream) >>> 11) * DOUBLE_UNIT;
+  }
+
+  /**
+   * @param step   the step being computed
+   * @param row    row of the cell drawing
+   * @param col    column of the cell drawing
+   * @param stream which of the cell's draws in this step
+   * @param bound  one past the largest value wanted
+   * @return a uniform int in [0, bound) for the key, or 0 when the bound is not positive
+   */
+  public int nextInt(long step, int row, int col, int stream, int bound) {
+    if (bound <= 0) {
+      return 0;
+    }
+    return (int) (((nextLong(step, row, col, stream) >>> 32) * bound) >>> 32);
+  }
+
+  // the SplitMix64 finalizer
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+}
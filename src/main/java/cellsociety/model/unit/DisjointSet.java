@@ -0,0 +1,81 @@
+package cellsociety.model.unit;
+
+/**
+ * DisjointSet class
+ * <p>
+ * Purpose: Union-find over the integers 0 to size - 1, with union by size and path halving, so a
+ * whole grid worth of unions and finds runs in close to linear time.
+ * <p>
+ * Assumptions: Elements are dense integers, e.g. the index of a cell in a StateGrid buffer plus a
+ * few extra ids for virtual nodes like "the water source".
+ * <p>
+ * Dependencies: None besides java.lang.
+ * <p>
+ * Example: CsPercolation unions every open cell with its open right and down neighbors, unions
+ * every FILLED cell with a source node and then asks connected(source, cell).
+ *
+ * @author ERIC XIE
+ */
+
+public class DisjointSet {
+
+  private final int[] myParent;
+  private final int[] mySize;
+
+  /**
+   * Purpose: Creates size singleton sets
+   *
+   * @param size number of elements
+   */
+  public DisjointSet(int size) {
+    myParent = new int[size];
+    mySize = new int[size];
+    for (int i = 0; i < size; i++) {
+      myParent[i] = i;
+      mySize[i] = 1;
+    }
+  }
+
+  /**
+   * @param element an element
+   * @return the representative of the element's set
+   */
+  public int find(int element) {
+    while (myParent[element] != element) {
+      myParent[element] = myParent[myParent[element]];
+      element = myParent[element];
+    }
+    return element;
+  }
+
+  /**
+   * Purpose: Merges the sets of two elements
+   *
+   * @param first  an element
+   * @param second another element
+   */
+  public void union(int first, int second) {
+    int a = find(first);
+    int b = find(second);
+    if (a == b) {
+      return;
+    }
+    if (mySize[a] < mySize[b]) {
+      int temp = a;
+      a = b;
+      b = temp;
+    }
+    myParent[b] = a;
+    mySize[a] += mySize[b];
+  }
+
+  /**
+   * @param first  an element
+   * @param second another element
+   * @return whether both elements are in the same set
+   */
+  public boolean connected(int first, int second) {
+    return find(first) == find(second);
+  }
+
+}
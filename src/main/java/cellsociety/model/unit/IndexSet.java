@@ -0,0 +1,138 @@
+package cellsociety.model.unit;
+
+import java.util.Arrays;
+
+/**
+ * IndexSet class
+ * <p>
+ * Purpose: A set of grid indices with constant time add, remove, membership and access by position,
+ * so a uniformly random member can be picked in constant time too. The members are kept packed at
+ * the front of an array and every index remembers where it sits, so removing swaps the last member
+ * into the hole.
+ * <p>
+ * Assumptions: Members are between 0 and the capacity given to the constructor, usually the length
+ * of a StateGrid buffer. The order of the members changes as members are removed.
+ * <p>
+ * Dependencies: None besides java.lang.
+ * <p>
+ * Example: SchellingSegregation keeps its vacancies in one and moves an agent to
+ * vacancies.get(randomInt(row, col, 0, vacancies.size())).
+ *
+ * @author ERIC XIE
+ */
+
+public class IndexSet {
+
+  private static final int ABSENT = -1;
+
+  private final int[] myMembers;
+  private final int[] myPositions;
+  private int mySize;
+
+  /**
+   * Purpose: Creates an empty set
+   *
+   * @param capacity one past the largest index that can be added
+   */
+  public IndexSet(int capacity) {
+    myMembers = new int[capacity];
+    myPositions = new int[capacity];
+    Arrays.fill(myPositions, ABSENT);
+  }
+
+  /**
+   * @return the number of members
+   */
+  public int size() {
+    return mySize;
+  }
+
+  /**
+   * @param position between 0 and size() - 1
+   * @return the member at that position
+   */
+  public int get(int position) {
+    return myMembers[position];
+  }
+
+  /**
+   * @param index an index below the capacity
+   * @return whether the index is a member
+   */
+  public boolean contains(int index) {
+    return myPositions[index] != ABSENT;
+  }
+
+  /**
+   * @param index an index below the capacity
+   * @return the position of the index, or -1 when it is not a member
+   */
+  public int positionOf(int index) {
+    return myPositions[index];
+  }
+
+  /**
+   * Purpose: Adds an index, doing nothing if it is already a member
+   *
+   * @param index an index below the capacity
+   */
+  public void add(int index) {
+    if (myPositions[index] != ABSENT) {
+      return;
+    }
+    myPositions[index] = mySize;
+    myMembers[mySize++] = index;
+  }
+
+  /**
+   * Purpose: Removes an index, doing nothing if it is not a member
+   *
+   * @param index an index below the capacity
+   */
+  public void remove(int index) {
+    int position = myPositions[index];
+    if (position == ABSENT) {
+      return;
+    }
+    int last = myMembers[--mySize];
+    myMembers[position] = last;
+    myPositions[last] = position;
+    myPositions[index] = ABSENT;
+  }
+
+  /**
+   * Purpose: Undoes remove for an index that sat at the given position: the member remove swapped
+   * into the hole goes back to the end, so the order is exactly what it was before the remove
+   *
+   * @param index    an index below the capacity that is not a member
+   * @param position the position the index had, between 0 and size()
+   */
+  public void insert(int index, int position) {
+    if (position < mySize) {
+      int moved = myMembers[position];
+      myMembers[mySize] = moved;
+      myPositions[moved] = mySize;
+    }
+    myMembers[position] = index;
+    myPositions[index] = position;
+    mySize++;
+  }
+
+  /**
+   * Purpose: Removes every member, in time proportional to their number rather than the capacity
+   */
+  public void clear() {
+    for (int i = 0; i < mySize; i++) {
+      myPositions[myMembers[i]] = ABSENT;
+    }
+    mySize = 0;
+  }
+
+  /**
+   * @return a copy of the members, in their current order
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(myMembers, mySize);
+  }
+
+}
@@ -0,0 +1,213 @@
+package cellsociety.model.unit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * MappedGrid class
+ * <p>
+ * Purpose: Off heap storage for grids too big for the heap or for one Java array. The current and
+ * next generation have the same padded layout as the buffers of StateGrid, but live in two memory
+ * mapped temporary files, so the operating system pages them in and out and only the band of rows
+ * being stepped has to be resident.
+ * <p>
+ * Assumptions: Rules never touch the mapping directly; GridClass copies a band of rows (plus the
+ * row above and below it) into an ordinary StateGrid window with readBand, steps the window and
+ * copies the band's next generation back with writeBand. Walking the bands top to bottom reads
+ * and writes both files sequentially, which is what the page cache is best at.
+ * <p>
+ * Dependencies: java.nio FileChannel mappings. A single mapping cannot exceed 2 GB, so each file is
+ * mapped in chunks of whole rows.
+ * <p>
+ * Example: GameOfLife with the "Off Heap" parameter keeps a 50000 x 50000 grid in two 2.5 GB files
+ * and steps it through a 16 MB window.
+ * <p>
+ * Misc: The files are deleted when their channel closes, right after mapping on most systems, so
+ * nothing is left behind once the mappings are collected.
+ *
+ * @author ERIC XIE
+ */
+
+public class MappedGrid {
+
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  private final int myRows;
+  private final int myCols;
+  private final int myStride;
+  private final int myRowsPerChunk;
+  private MappedByteBuffer[] myCurrent;
+  private MappedByteBuffer[] myNext;
+
+  /**
+   * Purpose: Creates both generations with every interior cell in state 0
+   * <p>
+   * Exceptions: UncheckedIOException when the temporary files cannot be created or mapped
+   *
+   * @param rows        number of rows in the simulation
+   * @param cols        number of columns in the simulation
+   * @param borderState the state of the one cell border around the grid
+   */
+  public MappedGrid(int rows, int cols, int borderState) {
+    myRows = rows;
+    myCols = cols;
+    myStride = cols + 2;
+    myRowsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / myStride);
+    myCurrent = map();
+    myNext = map();
+    fillBorder(myCurrent, (byte) borderState);
+    fillBorder(myNext, (byte) borderState);
+  }
+
+  // maps a new temporary file holding every padded row, one chunk of rows per mapping
+  private MappedByteBuffer[] map() {
+    int paddedRows = myRows + 2;
+    MappedByteBuffer[] chunks = new MappedByteBuffer[(paddedRows - 1) / myRowsPerChunk + 1];
+    try {
+      Path file = Files.createTempFile("cellsociety", ".grid");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+          long firstRow = (long) chunk * myRowsPerChunk;
+          long chunkRows = Math.min(myRowsPerChunk, paddedRows - firstRow);
+          chunks[chunk] = channel.map(MapMode.READ_WRITE, firstRow * myStride,
+              chunkRows * myStride);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot map the grid", e);
+    }
+    return chunks;
+  }
+
+  // writes the border state into the padding ring of one generation
+  private void fillBorder(MappedByteBuffer[] chunks, byte borderState) {
+    byte[] edge = new byte[myStride];
+    Arrays.fill(edge, borderState);
+    chunk(chunks, 0).put(offset(0), edge, 0, myStride);
+    chunk(chunks, myRows + 1).put(offset(myRows + 1), edge, 0, myStride);
+    for (int paddedRow = 1; paddedRow <= myRows; paddedRow++) {
+      MappedByteBuffer chunk = chunk(chunks, paddedRow);
+      chunk.put(offset(paddedRow), borderState);
+      chunk.put(offset(paddedRow) + myStride - 1, borderState);
+    }
+  }
+
+  // the mapping holding a padded row
+  private MappedByteBuffer chunk(MappedByteBuffer[] chunks, int paddedRow) {
+    return chunks[paddedRow / myRowsPerChunk];
+  }
+
+  // where a padded row starts inside its chunk
+  private int offset(int paddedRow) {
+    return paddedRow % myRowsPerChunk * myStride;
+  }
+
+  /**
+   * @return the number of rows in the simulation, not counting the border
+   */
+  public int getRows() {
+    return myRows;
+  }
+
+  /**
+   * @return the number of columns in the simulation, not counting the border
+   */
+  public int getCols() {
+    return myCols;
+  }
+
+  /**
+   * @param row the row of the cell, 0 being the first simulated row
+   * @param col the column of the cell, 0 being the first simulated column
+   * @return the current state of the cell
+   */
+  public int getState(int row, int col) {
+    return chunk(myCurrent, row + 1).get(offset(row + 1) + col + 1);
+  }
+
+  /**
+   * Purpose: Copies the current states of one row, without its border, into an array
+   *
+   * @param row    the row to copy
+   * @param cells  the array receiving one byte per column
+   * @param offset where in the array the row starts
+   */
+  public void readRow(int row, byte[] cells, int offset) {
+    chunk(myCurrent, row + 1).get(offset(row + 1) + 1, cells, offset, myCols);
+  }
+
+  /**
+   * Purpose: Sets the state of one cell in both generations
+   *
+   * @param row   the row of the cell
+   * @param col   the column of the cell
+   * @param state the new state
+   */
+  public void setState(int row, int col, int state) {
+    chunk(myCurrent, row + 1).put(offset(row + 1) + col + 1, (byte) state);
+    chunk(myNext, row + 1).put(offset(row + 1) + col + 1, (byte) state);
+  }
+
+  /**
+   * Purpose: Sets a whole row of both generations, e.g. from the initial configuration
+   *
+   * @param row    the row to set
+   * @param states the states of its cells, one per column
+   */
+  public void setRow(int row, int[] states) {
+    byte[] cells = new byte[myCols];
+    for (int col = 0; col < myCols; col++) {
+      cells[col] = (byte) states[col];
+    }
+    chunk(myCurrent, row + 1).put(offset(row + 1) + 1, cells, 0, myCols);
+    chunk(myNext, row + 1).put(offset(row + 1) + 1, cells, 0, myCols);
+  }
+
+  /**
+   * Purpose: Copies rows firstRow - 1 to firstRow + count of the current generation, border
+   * included, into a window laid out like the current() buffer of a StateGrid of count rows
+   *
+   * @param firstRow the first simulated row of the band
+   * @param count    number of rows in the band
+   * @param window   at least (count + 2) * (cols + 2) bytes
+   */
+  public void readBand(int firstRow, int count, byte[] window) {
+    for (int row = 0; row < count + 2; row++) {
+      int paddedRow = firstRow + row;
+      chunk(myCurrent, paddedRow).get(offset(paddedRow), window, row * myStride, myStride);
+    }
+  }
+
+  /**
+   * Purpose: Copies the band rows of a window laid out like the next() buffer of a StateGrid of
+   * count rows into the next generation
+   *
+   * @param firstRow the first simulated row of the band
+   * @param count    number of rows in the band
+   * @param window   the window the band was stepped into
+   */
+  public void writeBand(int firstRow, int count, byte[] window) {
+    for (int row = 1; row <= count; row++) {
+      int paddedRow = firstRow + row;
+      chunk(myNext, paddedRow).put(offset(paddedRow), window, row * myStride, myStride);
+    }
+  }
+
+  /**
+   * Purpose: Ends a step by making the next generation the current one, without copying
+   */
+  public void swap() {
+    MappedByteBuffer[] temp = myCurrent;
+    myCurrent = myNext;
+    myNext = temp;
+  }
+
+}
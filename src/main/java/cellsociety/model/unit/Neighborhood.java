@@ -1,23 +1,160 @@
 package cellsociety.model.unit;
 
-import cellsociety.model.unit.Cell;
-
 /**
- * Purpose: Was going to be the class that would hold the code for changing cell interactions
- * (triangle neighborhood or hexagon neighborhood)
+ * Purpose: Holds the code for reading a cell's neighbors straight out of a StateGrid buffer. The
+ * flat index offsets of every direction are computed once from the grid's stride, so counting or
+ * visiting neighbors never allocates and never bounds checks (the StateGrid border takes care of
+ * the edges).
  * <p>
- * Assumptions: Assumed to be set by the ForagingAnt class depending on whether it found food or
- * not
- *
- * Would have depended on front end classes if created
- *
- * Example: N/A
- *
- * Misc: Unfortunately, weren't able to get to it
+ * Assumptions: Directions use the ordering the old per Cell neighbor arrays used: indexes 0-3 are
+ * down, up, right and left (the von Neumann neighbors) and indexes 4-7 are the diagonals. The
+ * index passed in is always an interior cell of the grid the Neighborhood was made for.
+ * <p>
+ * Dependencies: Depends on StateGrid for the stride of the buffers it reads.
+ * <p>
+ * Example: GameOfLife counts its alive neighbors with countMoore(grid.current(), index, ALIVE) and
+ * Wator World finds the open directions of a fish with matchVonNeumann(states, index, EMPTY).
+ * <p>
+ * Misc: Only rectangular neighborhoods exist so far, triangle and hexagon neighborhoods would get
+ * their own offset tables here.
  *
+ * @author ERIC XIE
  */
 
-public class Neighborhood extends Cell {
+public class Neighborhood {
+
+  public static final int DOWN = 0;
+  public static final int UP = 1;
+  public static final int RIGHT = 2;
+  public static final int LEFT = 3;
+  public static final int DOWN_RIGHT = 4;
+  public static final int UP_LEFT = 5;
+  public static final int UP_RIGHT = 6;
+  public static final int DOWN_LEFT = 7;
+
+  public static final int VON_NEUMANN_SIZE = 4;
+  public static final int MOORE_SIZE = 8;
+
+  private final int[] myOffsets;
+
+  /**
+   * Purpose: Precomputes the neighbor offsets for the buffers of the given grid
+   *
+   * @param grid the grid whose buffers will be read
+   */
+  public Neighborhood(StateGrid grid) {
+    int stride = grid.getStride();
+    myOffsets = new int[]{stride, -stride, 1, -1, stride + 1, -stride - 1, -stride + 1,
+        stride - 1};
+  }
+
+  /**
+   * @param direction one of the direction constants
+   * @return how far the neighbor in that direction is from a cell in the flat buffers
+   */
+  public int offset(int direction) {
+    return myOffsets[direction];
+  }
+
+  /**
+   * Purpose: Reads a single neighbor of a cell in place
+   *
+   * @param states    the buffer to read, usually current() or next() of the grid
+   * @param index     the index of the cell
+   * @param direction one of the direction constants
+   * @return the state of the neighbor in that direction
+   */
+  public int neighbor(byte[] states, int index, int direction) {
+    return states[index + myOffsets[direction]];
+  }
+
+  /**
+   * Purpose: Counts the neighbors among all eight surrounding cells that are in the given state
+   *
+   * @param states the buffer to read
+   * @param index  the index of the cell
+   * @param state  the state to look for
+   * @return the number of Moore neighbors in that state
+   */
+  public int countMoore(byte[] states, int index, int state) {
+    int count = 0;
+    for (int offset : myOffsets) {
+      if (states[index + offset] == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Purpose: Counts the neighbors among the four N, E, S, W cells that are in the given state
+   *
+   * @param states the buffer to read
+   * @param index  the index of the cell
+   * @param state  the state to look for
+   * @return the number of von Neumann neighbors in that state
+   */
+  public int countVonNeumann(byte[] states, int index, int state) {
+    int count = 0;
+    for (int i = 0; i < VON_NEUMANN_SIZE; i++) {
+      if (states[index + myOffsets[i]] == state) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Purpose: Counts the Moore neighbors whose state is above a minimum, e.g. every neighbor that
+   * holds an agent rather than being empty or out of bounds
+   *
+   * @param states   the buffer to read
+   * @param index    the index of the cell
+   * @param minimum  neighbors with a state greater than this are counted
+   * @return the number of Moore neighbors above the minimum
+   */
+  public int countMooreAbove(byte[] states, int index, int minimum) {
+    int count = 0;
+    for (int offset : myOffsets) {
+      if (states[index + offset] > minimum) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Purpose: Finds which of the four von Neumann neighbors are in the given state, without
+   * building a list. Bit i of the result is set when the neighbor in direction i matches.
+   *
+   * @param states the buffer to read
+   * @param index  the index of the cell
+   * @param state  the state to look for
+   * @return a bit mask of the matching directions
+   */
+  public int matchVonNeumann(byte[] states, int index, int state) {
+    int mask = 0;
+    for (int i = 0; i < VON_NEUMANN_SIZE; i++) {
+      if (states[index + myOffsets[i]] == state) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
+  }
 
+  /**
+   * Purpose: Picks the n-th matching direction (counting from the lowest direction) out of a mask
+   * from matchVonNeumann, so a random choice among the matches needs no list either
+   *
+   * @param mask a direction bit mask
+   * @param n    which of the set directions to return, 0 being the lowest
+   * @return the direction constant
+   */
+  public static int nthDirection(int mask, int n) {
+    for (int i = 0; i < n; i++) {
+      mask &= mask - 1;
+    }
+    return Integer.numberOfTrailingZeros(mask);
+  }
 
 }
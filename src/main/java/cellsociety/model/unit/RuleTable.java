@@ -0,0 +1,156 @@
+package cellsociety.model.unit;
+
+/**
+ * RuleTable class
+ * <p>
+ * Purpose: A totalistic rule compiled into a lookup table, so the next state of a cell is one array
+ * read indexed by its current state and a count of its neighbors instead of a chain of ifs. The
+ * factories build the Life-like birth/survival rules of GameOfLife and the cyclic hunter rule of
+ * RockPaperScissors.
+ * <p>
+ * Assumptions: States are small non negative numbers and counts go from 0 to the eight Moore
+ * neighbors. A state the factories have no rule for keeps its value.
+ * <p>
+ * Dependencies: Neighborhood for the largest count.
+ * <p>
+ * Example: RuleTable.lifeLike(countMask("B3/S23", 'B'), countMask("B3/S23", 'S'), 0, 1, 2) is
+ * Conway's rule, and rules.next(state, neighborhood.countMoore(current, index, 1)) steps a cell.
+ *
+ * @author ERIC XIE
+ */
+
+public class RuleTable {
+
+  public static final int COUNTS = Neighborhood.MOORE_SIZE + 1;
+
+  private final byte[] myNext;
+  private final int myStates;
+
+  /**
+   * Purpose: Creates a table where every state keeps its value whatever the count
+   *
+   * @param states one past the largest state the table is read with
+   */
+  public RuleTable(int states) {
+    myStates = states;
+    myNext = new byte[states * COUNTS];
+    for (int state = 0; state < states; state++) {
+      for (int count = 0; count < COUNTS; count++) {
+        myNext[state * COUNTS + count] = (byte) state;
+      }
+    }
+  }
+
+  /**
+   * @return one past the largest state the table is read with
+   */
+  public int getStates() {
+    return myStates;
+  }
+
+  /**
+   * @param state the current state of a cell
+   * @param count how many of its neighbors the rule counted
+   * @return the next state of the cell
+   */
+  public int next(int state, int count) {
+    return myNext[state * COUNTS + count];
+  }
+
+  /**
+   * Purpose: Sets the next state of one (state, count) pair
+   *
+   * @param state the current state
+   * @param count the neighbor count
+   * @param next  the state it turns into
+   */
+  public void set(int state, int count, int next) {
+    myNext[state * COUNTS + count] = (byte) next;
+  }
+
+  /**
+   * Purpose: Reads the neighbor counts a B/S rule string lists after one of its letters, e.g. the
+   * counts 3 and 6 after the B of B36/S23
+   * <p>
+   * Assumptions: The rule is a B part, a slash and an S part, in that order and either case, each
+   * listing its counts from 0 to 8 as digits, every count at most once. A part can list no counts
+   * at all, like the S of Seeds' B2/S. The S/B order some other programs write (S23/B3) is rejected
+   * rather than guessed at.
+   * <p>
+   * Exceptions: IllegalArgumentException when the rule is not written that way
+   *
+   * @param rule   the rule string, e.g. B3/S23
+   * @param letter 'B' for the birth counts or 'S' for the survival counts
+   * @return a mask with bit n set for every listed count n
+   */
+  public static int countMask(String rule, char letter) {
+    String[] parts = rule.trim().toUpperCase().split("/", -1);
+    if (parts.length != 2 || !parts[0].startsWith("B") || !parts[1].startsWith("S")) {
+      throw new IllegalArgumentException("Rule " + rule + " is not written as B.../S...");
+    }
+    int mask = 0;
+    for (String part : parts) {
+      int counts = 0;
+      for (char digit : part.substring(1).toCharArray()) {
+        if (digit < '0' || digit >= '0' + COUNTS) {
+          throw new IllegalArgumentException("Rule " + rule + " lists " + digit
+              + " where a neighbor count from 0 to 8 should be");
+        }
+        if ((counts >> digit - '0' & 1) != 0) {
+          throw new IllegalArgumentException("Rule " + rule + " lists " + digit + " twice");
+        }
+        counts |= 1 << digit - '0';
+      }
+      if (part.charAt(0) == letter) {
+        mask = counts;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Purpose: Compiles a Life-like rule, where dead cells are born on the birth counts and live
+   * cells survive on the survival counts of live neighbors
+   * <p>
+   * Assumptions: A blocked cell inside the grid comes alive on a birth count, stays blocked on a
+   * survival count and clears otherwise, which is what the original Game of Life rules did to it.
+   *
+   * @param birth    mask of the birth counts, see countMask
+   * @param survival mask of the survival counts, see countMask
+   * @param empty    the dead state
+   * @param alive    the live state
+   * @param blocked  the blocked state
+   * @return the compiled rule
+   */
+  public static RuleTable lifeLike(int birth, int survival, int empty, int alive, int blocked) {
+    RuleTable rules = new RuleTable(Math.max(empty, Math.max(alive, blocked)) + 1);
+    for (int count = 0; count < COUNTS; count++) {
+      boolean born = (birth >> count & 1) != 0;
+      boolean survives = (survival >> count & 1) != 0;
+      rules.set(empty, count, born ? alive : empty);
+      rules.set(alive, count, survives ? alive : empty);
+      rules.set(blocked, count, born ? alive : survives ? blocked : empty);
+    }
+    return rules;
+  }
+
+  /**
+   * Purpose: Compiles a cyclic rule for species 0 to species - 1, where species s + 1 hunts
+   * species s and the last species hunts species 0; a cell is taken over by its hunter when more
+   * than threshold of its neighbors are that hunter
+   *
+   * @param species   number of species
+   * @param threshold hunters a cell can stand
+   * @return the compiled rule, read with the count of the cell's hunters
+   */
+  public static RuleTable cyclic(int species, int threshold) {
+    RuleTable rules = new RuleTable(species + 1);
+    for (int state = 0; state < species; state++) {
+      for (int count = Math.max(0, threshold + 1); count < COUNTS; count++) {
+        rules.set(state, count, (state + 1) % species);
+      }
+    }
+    return rules;
+  }
+
+}
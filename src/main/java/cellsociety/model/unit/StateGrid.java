@@ -0,0 +1,201 @@
+package cellsociety.model.unit;
+
+/**
+ * StateGrid class
+ * <p>
+ * Purpose: Shared storage layer for the simulations in cellsociety.model. Instead of one Cell
+ * object per square, the states of the whole grid are kept in two flat byte arrays (the current
+ * generation and the next generation) that are swapped at the end of a step.
+ * <p>
+ * Assumptions: We assume every cell state fits in a byte. The grid is padded with a one cell
+ * border holding a fixed state, so a cell's eight neighbors can always be read without a bounds
+ * check. Simulations that used to report out of bounds neighbors as -1 simply use -1 as their
+ * border state.
+ * <p>
+ * Dependencies: None besides java.lang.
+ * <p>
+ * Examples: GameOfLife creates a StateGrid with a BLOCKED border, writes every cell's next state
+ * into next() and calls swap() to move to the new generation. Per-cell extras like Wator World's
+ * chronons are kept in parallel int arrays from createLayer(), so only the simulations needing
+ * them pay for them.
+ *
+ * @author ERIC XIE
+ */
+
+public class StateGrid {
+
+  private final int myRows;
+  private final int myCols;
+  private final int myStride;
+  private byte[] myCurrent;
+  private byte[] myNext;
+
+  /**
+   * Purpose: Creates the padded state buffers from the initial configuration grid
+   * <p>
+   * Assumptions: The input grid is rectangular and every value fits in a byte.
+   *
+   * @param inputData      the initial states, indexed [row][col]
+   * @param borderState    the state of the one cell border around the grid
+   * @param doubleBuffered whether a next generation buffer is needed; simulations that update in
+   *                       place can skip it
+   */
+  public StateGrid(int[][] inputData, int borderState, boolean doubleBuffered) {
+    this(inputData.length, inputData[0].length, borderState, doubleBuffered);
+    for (int row = 0; row < myRows; row++) {
+      int base = index(row, 0);
+      for (int col = 0; col < myCols; col++) {
+        myCurrent[base + col] = (byte) inputData[row][col];
+      }
+    }
+    if (myNext != null) {
+      carryOver();
+    }
+  }
+
+  /**
+   * Purpose: Creates a grid of the given size with every interior cell in state 0
+   * <p>
+   * Exceptions: IllegalArgumentException when the padded grid has more cells than a byte[] can
+   * hold, so no index overflows
+   *
+   * @param rows           number of rows in the simulation
+   * @param cols           number of columns in the simulation
+   * @param borderState    the state of the one cell border around the grid
+   * @param doubleBuffered whether a next generation buffer is needed
+   */
+  public StateGrid(int rows, int cols, int borderState, boolean doubleBuffered) {
+    myRows = rows;
+    myCols = cols;
+    myStride = cols + 2;
+    if ((long) (rows + 2) * myStride > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "A grid of " + rows + " x " + cols + " cells is too large to keep on the heap");
+    }
+    myCurrent = new byte[(rows + 2) * myStride];
+    fillBorder(myCurrent, (byte) borderState);
+    if (doubleBuffered) {
+      myNext = new byte[myCurrent.length];
+      System.arraycopy(myCurrent, 0, myNext, 0, myCurrent.length);
+    }
+  }
+
+  // writes the border state into the padding ring of the given buffer
+  private void fillBorder(byte[] buffer, byte borderState) {
+    for (int col = 0; col < myStride; col++) {
+      buffer[col] = borderState;
+      buffer[buffer.length - myStride + col] = borderState;
+    }
+    for (int row = 1; row <= myRows; row++) {
+      buffer[row * myStride] = borderState;
+      buffer[row * myStride + myStride - 1] = borderState;
+    }
+  }
+
+  /**
+   * @return the number of rows in the simulation, not counting the border
+   */
+  public int getRows() {
+    return myRows;
+  }
+
+  /**
+   * @return the number of columns in the simulation, not counting the border
+   */
+  public int getCols() {
+    return myCols;
+  }
+
+  /**
+   * @return the distance between two vertically adjacent cells in the flat buffers
+   */
+  public int getStride() {
+    return myStride;
+  }
+
+  /**
+   * Purpose: Converts a simulation row and column into an index of the flat buffers
+   *
+   * @param row the row of the cell, 0 being the first simulated row
+   * @param col the column of the cell, 0 being the first simulated column
+   * @return the index of the cell in current() and next()
+   */
+  public int index(int row, int col) {
+    return (row + 1) * myStride + col + 1;
+  }
+
+  /**
+   * @param index an index into the flat buffers
+   * @return the simulation row of the cell at that index
+   */
+  public int rowOf(int index) {
+    return index / myStride - 1;
+  }
+
+  /**
+   * @param index an index into the flat buffers
+   * @return the simulation column of the cell at that index
+   */
+  public int colOf(int index) {
+    return index % myStride - 1;
+  }
+
+  /**
+   * @return the current generation buffer, for the rule passes to read from
+   */
+  public byte[] current() {
+    return myCurrent;
+  }
+
+  /**
+   * @return the next generation buffer, for the rule passes to write into
+   */
+  public byte[] next() {
+    return myNext;
+  }
+
+  // method that gets the current state of a cell in the simulation
+  public int getState(int row, int col) {
+    return myCurrent[index(row, col)];
+  }
+
+  // method that sets the current (and next, if buffered) state of a cell
+  public void setState(int row, int col, int state) {
+    int index = index(row, col);
+    myCurrent[index] = (byte) state;
+    if (myNext != null) {
+      myNext[index] = (byte) state;
+    }
+  }
+
+  /**
+   * Purpose: Ends a step by making the next generation the current one. The old current buffer is
+   * reused as the next buffer of the following step, so nothing is copied or allocated.
+   * <p>
+   * Assumptions: The rule pass wrote every interior cell of next(), or called carryOver() first.
+   */
+  public void swap() {
+    byte[] temp = myCurrent;
+    myCurrent = myNext;
+    myNext = temp;
+  }
+
+  /**
+   * Purpose: Copies the current generation into the next buffer, for rule passes that only write
+   * the cells that change or that move states into neighboring cells.
+   */
+  public void carryOver() {
+    System.arraycopy(myCurrent, 0, myNext, 0, myCurrent.length);
+  }
+
+  /**
+   * Purpose: Creates a per-cell primitive array lined up with the state buffers, so extra cell
+   * attributes can be read with the same index as the state.
+   *
+   * @return a zeroed int array with one slot per (padded) cell
+   */
+  public int[] createLayer() {
+    return new int[myCurrent.length];
+  }
+
+}
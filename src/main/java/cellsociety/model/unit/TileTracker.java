@@ -0,0 +1,215 @@
+package cellsociety.model.unit;
+
+import java.util.Arrays;
+
+/**
+ * TileTracker class
+ * <p>
+ * Purpose: Splits a grid into rectangular tiles and remembers which of them changed during the last
+ * step, so the next step only has to evaluate the changed tiles and the tiles touching them. Once a
+ * region of the grid settles down it costs nothing to step, which makes the work per step follow
+ * the activity in the grid instead of its area.
+ * <p>
+ * Assumptions: The rule being stepped is deterministic and only looks at a cell and its eight
+ * neighbors, and tiles are at least one cell wide. Then a tile whose neighborhood did not change
+ * last step cannot change this step either. Skipped tiles are never written, so both buffers of a
+ * double buffered grid must hold the same values for every inactive tile; this holds on its own as
+ * long as the grid is only written by the step or through both buffers at once.
+ * <p>
+ * Dependencies: None besides java.lang, GridClass and PackedLife decide what a tile covers.
+ * <p>
+ * Example: GridClass.stepActiveTiles visits every active tile, runs the rule on its cells, calls
+ * markChanged for tiles whose next state differs from the current one and then advance() to work
+ * out which tiles to visit next step.
+ * <p>
+ * Misc: Every tile starts out active, so the first step always looks at the whole grid.
+ *
+ * @author ERIC XIE
+ */
+
+public class TileTracker {
+
+  public static final int DEFAULT_TILE_SIZE = 16;
+
+  private final int myRows;
+  private final int myCols;
+  private final int myTileHeight;
+  private final int myTileWidth;
+  private final int myTileRows;
+  private final int myTileCols;
+  private boolean[] myActive;
+  private boolean[] myChanged;
+  private boolean[] mySpare;
+  private int myActiveCount;
+
+  /**
+   * Purpose: Creates a tracker with every tile active
+   *
+   * @param rows       number of rows in the grid
+   * @param cols       number of columns in the grid
+   * @param tileHeight number of rows in a tile
+   * @param tileWidth  number of columns in a tile
+   */
+  public TileTracker(int rows, int cols, int tileHeight, int tileWidth) {
+    myRows = rows;
+    myCols = cols;
+    myTileHeight = tileHeight;
+    myTileWidth = tileWidth;
+    myTileRows = (rows + tileHeight - 1) / tileHeight;
+    myTileCols = (cols + tileWidth - 1) / tileWidth;
+    myActive = new boolean[myTileRows * myTileCols];
+    myChanged = new boolean[myActive.length];
+    mySpare = new boolean[myActive.length];
+    activateAll();
+  }
+
+  /**
+   * @return the number of rows of tiles
+   */
+  public int getTileRows() {
+    return myTileRows;
+  }
+
+  /**
+   * @return the number of columns of tiles
+   */
+  public int getTileCols() {
+    return myTileCols;
+  }
+
+  /**
+   * @return how many tiles will be evaluated in the coming step
+   */
+  public int getActiveTileCount() {
+    return myActiveCount;
+  }
+
+  /**
+   * @param tileRow row of the tile
+   * @param tileCol column of the tile
+   * @return whether the tile has to be evaluated in the coming step
+   */
+  public boolean isActive(int tileRow, int tileCol) {
+    return myActive[tileRow * myTileCols + tileCol];
+  }
+
+  /**
+   * @param tileRow row of the tile
+   * @param tileCol column of the tile
+   * @return whether the tile was marked changed in the step being computed
+   */
+  public boolean isChanged(int tileRow, int tileCol) {
+    return myChanged[tileRow * myTileCols + tileCol];
+  }
+
+  /**
+   * @param tileRow row of the tile
+   * @return the first grid row covered by the tile row
+   */
+  public int firstRow(int tileRow) {
+    return tileRow * myTileHeight;
+  }
+
+  /**
+   * @param tileRow row of the tile
+   * @return one past the last grid row covered by the tile row
+   */
+  public int endRow(int tileRow) {
+    return Math.min(myRows, (tileRow + 1) * myTileHeight);
+  }
+
+  /**
+   * @param tileCol column of the tile
+   * @return the first grid column covered by the tile column
+   */
+  public int firstCol(int tileCol) {
+    return tileCol * myTileWidth;
+  }
+
+  /**
+   * @param tileCol column of the tile
+   * @return one past the last grid column covered by the tile column
+   */
+  public int endCol(int tileCol) {
+    return Math.min(myCols, (tileCol + 1) * myTileWidth);
+  }
+
+  /**
+   * Purpose: Records that a tile changed in the step being computed. Different tiles can be marked
+   * from different threads.
+   *
+   * @param tileRow row of the tile
+   * @param tileCol column of the tile
+   */
+  public void markChanged(int tileRow, int tileCol) {
+    myChanged[tileRow * myTileCols + tileCol] = true;
+  }
+
+  /**
+   * Purpose: Records that the tile holding a grid cell changed in the step being computed, for
+   * rules whose writes can cross tile edges. Marking only ever writes true, so threads marking the
+   * same tile do not get in each other's way.
+   *
+   * @param row grid row of the changed cell
+   * @param col grid column of the changed cell
+   */
+  public void markChangedAt(int row, int col) {
+    myChanged[row / myTileHeight * myTileCols + col / myTileWidth] = true;
+  }
+
+  /**
+   * Purpose: Wakes up the tile holding a cell that was written outside of a step, along with the
+   * tiles around it, for the coming step
+   *
+   * @param row grid row of the written cell
+   * @param col grid column of the written cell
+   */
+  public void wake(int row, int col) {
+    myActiveCount += activateAround(row / myTileHeight, col / myTileWidth, myActive);
+  }
+
+  /**
+   * Purpose: Makes every tile active, e.g. after the grid was replaced wholesale
+   */
+  public void activateAll() {
+    Arrays.fill(myActive, true);
+    myActiveCount = myActive.length;
+  }
+
+  /**
+   * Purpose: Ends a step: the tiles that changed and their neighbors become the active tiles of the
+   * coming step, and the change marks are cleared
+   */
+  public void advance() {
+    boolean[] active = mySpare;
+    Arrays.fill(active, false);
+    int activeCount = 0;
+    for (int tileRow = 0; tileRow < myTileRows; tileRow++) {
+      for (int tileCol = 0; tileCol < myTileCols; tileCol++) {
+        if (myChanged[tileRow * myTileCols + tileCol]) {
+          activeCount += activateAround(tileRow, tileCol, active);
+        }
+      }
+    }
+    mySpare = myActive;
+    myActive = active;
+    Arrays.fill(myChanged, false);
+    myActiveCount = activeCount;
+  }
+
+  // activates a tile and its eight surrounding tiles in the given flags, returning how many of them
+  // were not active yet
+  private int activateAround(int tileRow, int tileCol, boolean[] flags) {
+    int activated = 0;
+    for (int r = Math.max(0, tileRow - 1); r <= Math.min(myTileRows - 1, tileRow + 1); r++) {
+      for (int c = Math.max(0, tileCol - 1); c <= Math.min(myTileCols - 1, tileCol + 1); c++) {
+        if (!flags[r * myTileCols + c]) {
+          flags[r * myTileCols + c] = true;
+          activated++;
+        }
+      }
+    }
+    return activated;
+  }
+
+}
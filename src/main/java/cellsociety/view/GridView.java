@@ -1,14 +1,11 @@
 package cellsociety.view;
 
 import cellsociety.XMLException;
-import cellsociety.model.CsPercolation;
-import cellsociety.model.FallingSandWater;
-import cellsociety.model.GameOfLife;
+import cellsociety.configuration.HistoryRecorder;
 import cellsociety.model.GridClass;
-import cellsociety.model.RockPaperScissors;
-import cellsociety.model.SchellingSegregation;
-import cellsociety.model.SpreadingFire;
-import cellsociety.model.WatorWorld;
+import cellsociety.model.RewindBuffer;
+import cellsociety.model.SimulationFactory;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import javafx.animation.PauseTransition;
@@ -27,12 +24,26 @@ import javafx.util.Duration;
  * model created is based on the type passed in the record and to update the view, the class gets
  * the state of each cell from the model and changes the CSS ID of each cell in the view to reflect
  * its state{@link #updateGridPane()}
+ * <p>
+ * While recording, every grid shown is also handed to a HistoryRecorder, which encodes and writes
+ * it on its own thread: the steps of {@link #next()}, and the steps {@link #previous()} and
+ * {@link #reset()} go back to, so the history replays what was on screen. next() and previous()
+ * only hand over the cells the RewindBuffer saw change, so recording costs as much as the step
+ * changed and never waits for the writer thread; a slow disk makes its queue grow instead.
+ * Starting to record, reset() and models without a RewindBuffer hand over the whole grid, which
+ * waits whenever the writer is HistoryRecorder.QUEUED_FRAMES whole frames behind.
+ * <p>
+ * Every step is also kept in a RewindBuffer of REWIND_MEGABYTES, so {@link #previous()} can undo
+ * steps and {@link #reset()} goes back to the initial state without creating the model again.
+ * Models keeping their grid off heap get no RewindBuffer: previous() does nothing for them and
+ * reset() creates the model again.
  *
  * @author Robert Cranston
  */
 public class GridView {
 
   public static final double BASE_ANIMATION_SPEED = .5;
+  public static final int REWIND_MEGABYTES = 64;
   private double cellHeight;
   private double cellWidth;
   private SimulationInfo myRecord;
@@ -43,6 +54,8 @@ public class GridView {
   private List<List<Shape>> displayedCellsList;
   private boolean isAnimated;
   private double animationSpeed;
+  private HistoryRecorder myRecorder;
+  private RewindBuffer myRewind;
 
   /**
    * Initializes the simulation speed and calls the method to display the initial state of the
@@ -61,29 +74,7 @@ public class GridView {
   //if it cannot initialized for whatever reason.
   protected GridClass chooseSimulation() {
     try {
-      switch (myRecord.type()) {
-        case "schellingsegregation" -> {
-          return new SchellingSegregation(myRecord);
-        }
-        case "gameoflife" -> {
-          return new GameOfLife(myRecord);
-        }
-        case "watorworld" -> {
-          return new WatorWorld(myRecord);
-        }
-        case "spreadingoffire" -> {
-          return new SpreadingFire(myRecord);
-        }
-        case "cspercolation" -> {
-          return new CsPercolation(myRecord);
-        }
-        case "rockpaperscissors" -> {
-          return new RockPaperScissors(myRecord);
-        }
-        case "fallingsandandwater" -> {
-          return new FallingSandWater(myRecord);
-        }
-      }
+      return SimulationFactory.create(myRecord);
     } catch (XMLException e) {
       CellSocietyView.showMessage(AlertType.ERROR, e.getMessage());
     }
@@ -93,6 +84,7 @@ public class GridView {
   //handles full process of setting up and displaying the grid
   protected void displayGrid() {
     gridModel = chooseSimulation();
+    myRewind = createRewind();
     grid = new GridPane();
     setupGrid();
     displayedCellsList = new ArrayList();
@@ -100,6 +92,15 @@ public class GridView {
     initializeGridDisplay();
   }
 
+  //follows the model with a rewind buffer, unless the model keeps its grid off heap, where the
+  //buffer could not see what each step changed
+  private RewindBuffer createRewind() {
+    if (gridModel == null || !RewindBuffer.supports(gridModel)) {
+      return null;
+    }
+    return new RewindBuffer(gridModel, REWIND_MEGABYTES);
+  }
+
   //controls the spacing between the cells of the grid to achieve the desired look.
   protected void setupGrid() {
   }
@@ -185,9 +186,62 @@ public class GridView {
   public void next() {
     System.out.println(myRecord.type());
     gridModel.updateGrid();
+    if (myRewind != null) {
+      myRewind.record();
+    }
+    if (myRecorder != null) {
+      captureFrame();
+    }
     updateGridPane();
   }
 
+  //stops the animation and undoes the last step, as long as the rewind buffer still holds one
+  public void previous() {
+    isAnimated = false;
+    if (myRewind != null && myRewind.stepBack()) {
+      if (myRecorder != null) {
+        captureFrame();
+      }
+      updateGridPane();
+    }
+  }
+
+  //hands the recorder the cells the rewind buffer last saw change, or the whole grid when it has
+  //none to give
+  private void captureFrame() {
+    int[] rows = myRewind == null ? null : myRewind.getLastRows();
+    if (rows == null) {
+      myRecorder.capture(gridModel);
+    } else {
+      myRecorder.capture(gridModel, rows, myRewind.getLastCols());
+    }
+  }
+
+  /**
+   * Records every grid shown from the current one on to a history file, until stopRecording.
+   * Each next(), previous() and reset() then also hands the recorder what it changed.
+   *
+   * @param file the history file to write
+   */
+  public void startRecording(File file) {
+    stopRecording();
+    myRecorder = new HistoryRecorder(file, myRecord.height(), myRecord.width(),
+        HistoryRecorder.DEFAULT_KEYFRAME_INTERVAL);
+    myRecorder.capture(gridModel);
+  }
+
+  //finishes writing the history being recorded, if any
+  public void stopRecording() {
+    if (myRecorder != null) {
+      myRecorder.close();
+      myRecorder = null;
+    }
+  }
+
+  public boolean isRecording() {
+    return myRecorder != null;
+  }
+
   //changes the color of the cells to reflect their next state
   public void updateGridPane() {
     for (int i = 0; i < displayedCellsList.size(); i++) {
@@ -219,9 +273,17 @@ public class GridView {
     }
   }
 
+  //puts the grid back to its initial state from the rewind buffer, or builds the simulation again
+  //from its record when the buffer cannot restore it
   public void reset() {
-    gridModel = chooseSimulation();
+    if (myRewind == null || !myRewind.reset()) {
+      gridModel = chooseSimulation();
+      myRewind = createRewind();
+    }
     isAnimated = false;
+    if (myRecorder != null) {
+      captureFrame();
+    }
     updateGridPane();
   }
 }
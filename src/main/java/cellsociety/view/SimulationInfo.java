@@ -3,15 +3,25 @@ package cellsociety.view;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * Record to store all of the initial information for a simulation. Is filled after a file is read.
+ * <p>
+ * The initial grid is either held whole in initialGrid or handed out a row at a time by
+ * initialRows, so a grid kept off heap never has to fit on the heap as an int[][]. initialRows is
+ * always set; initialGrid() builds the whole grid from it when only the rows were given, once, and
+ * keeps it for later calls and rows.
+ * <p>
+ * textParameters holds the parameters whose values are not numbers, like GameOfLife's "Rule".
  *
  * @author Robert Cranston
  */
 public record SimulationInfo(String type, String title, String author, String description,
                              int width, int height,
-                             int[][] initialGrid, Map<String, Integer> possibleParameters) {
+                             int[][] initialGrid, Map<String, Integer> possibleParameters,
+                             IntFunction<int[]> initialRows,
+                             Map<String, String> textParameters) {
 
   public static final List<String> tags = List.of("type", "title", "author", "description",
       "width", "height");
@@ -19,14 +29,38 @@ public record SimulationInfo(String type, String title, String author, String de
 
   public SimulationInfo(Map<String, String> info, int[][] grid,
       Map<String, Integer> possibleParameters) {
+    this(info, grid, possibleParameters, null);
+  }
+
+  public SimulationInfo(Map<String, String> info, int[][] grid,
+      Map<String, Integer> possibleParameters, IntFunction<int[]> rows) {
+    this(info, grid, possibleParameters, rows, null);
+  }
+
+  public SimulationInfo(Map<String, String> info, int[][] grid,
+      Map<String, Integer> possibleParameters, IntFunction<int[]> rows,
+      Map<String, String> textParameters) {
     this(info.get(tags.get(0)), info.get(tags.get(1)),
         info.get(tags.get(2)), info.get(tags.get(3)),
         Integer.parseInt(info.get(tags.get(4))), Integer.parseInt(info.get(tags.get(5))), grid,
-        possibleParameters);
+        possibleParameters, rows, textParameters);
   }
 
   public SimulationInfo(String type, String title, String author, String description, int width,
       int height, int[][] initialGrid, Map<String, Integer> possibleParameters) {
+    this(type, title, author, description, width, height, initialGrid, possibleParameters, null);
+  }
+
+  public SimulationInfo(String type, String title, String author, String description, int width,
+      int height, int[][] initialGrid, Map<String, Integer> possibleParameters,
+      IntFunction<int[]> initialRows) {
+    this(type, title, author, description, width, height, initialGrid, possibleParameters,
+        initialRows, null);
+  }
+
+  public SimulationInfo(String type, String title, String author, String description, int width,
+      int height, int[][] initialGrid, Map<String, Integer> possibleParameters,
+      IntFunction<int[]> initialRows, Map<String, String> textParameters) {
     this.type = type.toLowerCase().replaceAll(" ", "");
     this.title = title;
     this.author = author;
@@ -35,6 +69,52 @@ public record SimulationInfo(String type, String title, String author, String de
     this.height = height;
     this.initialGrid = initialGrid;
     this.possibleParameters = possibleParameters;
+    if (initialRows == null) {
+      this.initialRows = initialGrid == null ? null : row -> initialGrid[row];
+    } else {
+      this.initialRows = initialGrid == null ? new CachedRows(initialRows) : initialRows;
+    }
+    this.textParameters = textParameters == null ? Map.of() : textParameters;
+
+  }
+
+  /**
+   * @return the whole initial grid, built from initialRows (top row first) when the record was
+   * only given its rows
+   */
+  @Override
+  public int[][] initialGrid() {
+    if (initialRows instanceof CachedRows rows) {
+      return rows.wholeGrid(height);
+    }
+    return initialGrid;
+  }
+
+  // hands out the rows a record was given until the whole grid is asked for, then builds it once
+  // and serves everything from it, since streamed rows can only be read once
+  private static final class CachedRows implements IntFunction<int[]> {
+
+    private final IntFunction<int[]> myRows;
+    private int[][] myGrid;
+
+    private CachedRows(IntFunction<int[]> rows) {
+      myRows = rows;
+    }
+
+    @Override
+    public int[] apply(int row) {
+      return myGrid != null ? myGrid[row] : myRows.apply(row);
+    }
 
+    private synchronized int[][] wholeGrid(int height) {
+      if (myGrid == null) {
+        int[][] grid = new int[height][];
+        for (int row = 0; row < height; row++) {
+          grid[row] = myRows.apply(row);
+        }
+        myGrid = grid;
+      }
+      return myGrid;
+    }
   }
 }
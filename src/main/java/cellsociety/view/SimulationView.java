@@ -3,6 +3,7 @@ package cellsociety.view;
 import cellsociety.XMLException;
 import cellsociety.configuration.FileReader;
 import cellsociety.configuration.FileWriters;
+import cellsociety.configuration.HistoryRecorder;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -42,6 +43,7 @@ import javafx.stage.Stage;
 public class SimulationView {
 
   public static final FileChooser FILE_CHOOSER = makeChooser("*.xml");
+  public static final FileChooser HISTORY_CHOOSER = makeChooser("*" + HistoryRecorder.EXTENSION);
   public static final int SLIDER_MINIMUM = 1;
   public static final int SLIDER_MAXIMUM = 10;
   public static final double SLIDER_START = 5;
@@ -55,6 +57,7 @@ public class SimulationView {
   private Button myPauseButton;
   private Button myPlayButton;
   private Button myNextButton;
+  private Button myPreviousButton;
   private Button myResetButton;
   private VBox mySidePanel;
   private GridView myGridView;
@@ -89,13 +92,31 @@ public class SimulationView {
     box.setId("configBox");
     Button loadFile = CellSocietyView.makeButton("LoadFile", event -> selectNewFile(), myResources);
     Button saveFile = CellSocietyView.makeButton("SaveFile", event -> saveState(), myResources);
+    Button record = CellSocietyView.makeButton("RecordHistory", event -> toggleRecording(),
+        myResources);
     ChoiceBox<String> gridShapeChoice = makeChoiceBox(GRID_SHAPE_OPTIONS,
         (ov, old_val, new_val) -> changeGridShape(new_val));
     gridShapeChoice.getSelectionModel().select(0);
-    box.getChildren().addAll(loadFile, saveFile, gridShapeChoice);
+    box.getChildren().addAll(loadFile, saveFile, record, gridShapeChoice);
     return box;
   }
 
+  //starts recording the steps of the grid to a history file, or stops if already recording
+  private void toggleRecording() {
+    try {
+      if (myGridView.isRecording()) {
+        myGridView.stopRecording();
+        return;
+      }
+      File historyFile = HISTORY_CHOOSER.showSaveDialog(new Stage());
+      if (historyFile != null) {
+        myGridView.startRecording(historyFile);
+      }
+    } catch (XMLException e) {
+      CellSocietyView.showMessage(AlertType.ERROR, e.getMessage());
+    }
+  }
+
   //pauses the animation if it is playing and writes a new file with the values
   private void saveState() {
     myGridView.pause();
@@ -121,6 +142,7 @@ public class SimulationView {
     myGridShape = newShape;
     System.out.println(newShape);
     myGridView.pause();
+    myGridView.stopRecording();
     myRoot.setCenter(chooseGrid(myRecord));
   }
 
@@ -130,6 +152,7 @@ public class SimulationView {
       myGridView.pause();
       File dataFile = FILE_CHOOSER.showOpenDialog(new Stage());
       if (dataFile != null) {
+        myGridView.stopRecording();
         FileReader initial = new FileReader(dataFile.getCanonicalPath());
         myRecord = initial.getRecord();
         myRoot.setCenter(chooseGrid(myRecord));
@@ -178,7 +201,7 @@ public class SimulationView {
 
     makeControlButtons();
 
-    resetNext.getChildren().addAll(myResetButton, myNextButton);
+    resetNext.getChildren().addAll(myResetButton, myPreviousButton, myNextButton);
     playPause.getChildren().addAll(myPauseButton, myPlayButton);
     control.getChildren().addAll(playPause, resetNext);
     return control;
@@ -193,6 +216,8 @@ public class SimulationView {
         myResources);
     myNextButton = CellSocietyView.makeButton("NextButton", event -> myGridView.next(),
         myResources);
+    myPreviousButton = CellSocietyView.makeButton("PreviousButton", event -> myGridView.previous(),
+        myResources);
   }
 
 
@@ -5,9 +5,12 @@ module cellsociety_app {
     requires javafx.base;
     requires java.xml;
     requires java.desktop;
+    // optional, only used when the JVM is started with --add-modules jdk.incubator.vector
+    requires static jdk.incubator.vector;
 
   exports cellsociety;
   exports cellsociety.model;
+  exports cellsociety.model.engine;
   exports cellsociety.view;
   exports cellsociety.configuration;
     exports cellsociety.view.shapes;
@@ -0,0 +1,100 @@
+package cellsociety.configuration;
+
+import static cellsociety.model.RandomGrids.randomGrid;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cellsociety.model.GridClass;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a simulation read back from a checkpoint has the states, step count and thread count
+ * it was written with, and steps on exactly as the simulation it was written from would have. Every
+ * simulation runs with its defaults and with each of its fast paths or rule sets switched on its
+ * own.
+ *
+ * @author Robert Cranston
+ */
+class CheckpointTest {
+
+  // a simulation type with the parameters it runs on and the share of its cells in each state
+  private record Case(String type, Map<String, Integer> parameters, double... weights) {
+
+  }
+
+  private static final List<Case> CASES = List.of(
+      new Case("gameoflife", Map.of(), 0.7, 0.3),
+      new Case("gameoflife", Map.of("Bit Packing", 0), 0.7, 0.3),
+      new Case("gameoflife", Map.of("Bit Packing", 0, "Vector", 0), 0.7, 0.3),
+      new Case("rockpaperscissors", Map.of("Threshold Value", 2), 1, 1, 1),
+      new Case("rockpaperscissors", Map.of("Threshold Value", 2, "Vector", 0), 1, 1, 1),
+      new Case("cspercolation", Map.of(), 0.6, 0.02, 0.38),
+      new Case("cspercolation", Map.of("Frontier", 0), 0.6, 0.02, 0.38),
+      new Case("spreadingoffire", Map.of("Probability of Catching Fire", 60), 0.2, 0.78, 0.02),
+      new Case("spreadingoffire", Map.of("Probability of Catching Fire", 60, "Frontier", 0), 0.2,
+          0.78, 0.02),
+      new Case("schellingsegregation", Map.of(), 0.2, 0.4, 0.4),
+      new Case("watorworld", Map.of(), 0.5, 0.35, 0.15),
+      new Case("watorworld", Map.of("Breeding", 1), 0.5, 0.35, 0.15),
+      new Case("fallingsandandwater", Map.of(), 0.4, 0.1, 0.25, 0.25));
+  private static final int[][] SIZES = {{1, 1}, {7, 40}, {33, 47}};
+  private static final int[] THREADS = {1, 3};
+  private static final int STEPS_BEFORE = 20;
+  private static final int STEPS_AFTER = 20;
+
+  @TempDir
+  File myFolder;
+
+  @Test
+  void readBackSimulationContinuesTheRun() throws IOException {
+    Random random = new Random(7);
+    for (Case simulation : CASES) {
+      for (int[] size : SIZES) {
+        for (int threads : THREADS) {
+          Map<String, Integer> parameters = new HashMap<>(simulation.parameters());
+          parameters.put("Seed", 1234);
+          parameters.put("Threads", threads);
+          SimulationInfo record = new SimulationInfo(simulation.type(), "t", "a", "d", size[1],
+              size[0], randomGrid(random, size[0], size[1], simulation.weights()), parameters);
+          String message = simulation.type() + " " + parameters + " " + size[0] + "x" + size[1];
+          GridClass original = SimulationFactory.create(record);
+          for (int step = 0; step < STEPS_BEFORE; step++) {
+            original.updateGrid();
+          }
+          File file = File.createTempFile("checkpoint", CheckpointWriter.EXTENSION, myFolder);
+          new CheckpointWriter(record, original).write(file);
+          GridClass restored = new CheckpointReader(file.getPath()).getModel();
+
+          assertEquals(original.getStepCount(), restored.getStepCount(), message);
+          assertEquals(original.getThreadCount(), restored.getThreadCount(), message);
+          assertArrayEquals(states(original, size), states(restored, size), message);
+          for (int step = 1; step <= STEPS_AFTER; step++) {
+            original.updateGrid();
+            restored.updateGrid();
+            assertArrayEquals(states(original, size), states(restored, size),
+                message + " step " + step + " after reading");
+          }
+        }
+      }
+    }
+  }
+
+  private static byte[] states(GridClass model, int[] size) {
+    byte[] cells = new byte[size[0] * size[1]];
+    for (int r = 0; r < size[0]; r++) {
+      for (int c = 0; c < size[1]; c++) {
+        cells[r * size[1] + c] = (byte) model.getState(r, c);
+      }
+    }
+    return cells;
+  }
+}
@@ -0,0 +1,115 @@
+package cellsociety.configuration;
+
+import static cellsociety.model.RandomGrids.randomGrid;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cellsociety.model.GridClass;
+import cellsociety.model.RewindBuffer;
+import cellsociety.model.SimulationFactory;
+import cellsociety.view.SimulationInfo;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a HistoryReader reads back every frame a HistoryRecorder captured, whole frames and
+ * the changed cells of steps, steps back and resets alike, in order and out of order, whatever the
+ * keyframe interval.
+ *
+ * @author Robert Cranston
+ */
+class HistoryRecorderTest {
+
+  private static final int[][] SIZES = {{1, 1}, {3, 7}, {50, 60}};
+  private static final int[] KEYFRAME_INTERVALS = {1, 3, 64};
+  private static final int[] THREADS = {1, 3};
+  private static final int CAPTURES = 150;
+  private static final int BUFFER_MEGABYTES = 64;
+
+  @TempDir
+  File myFolder;
+
+  @Test
+  void gameOfLifeReadsBack() throws IOException {
+    assertEveryFrameReadsBack("gameoflife", 0.7, 0.3);
+  }
+
+  @Test
+  void watorWorldReadsBack() throws IOException {
+    assertEveryFrameReadsBack("watorworld", 0.5, 0.35, 0.15);
+  }
+
+  @Test
+  void fallingSandReadsBack() throws IOException {
+    assertEveryFrameReadsBack("fallingsandandwater", 0.4, 0.1, 0.25, 0.25);
+  }
+
+  private void assertEveryFrameReadsBack(String type, double... weights) throws IOException {
+    Random random = new Random(1);
+    for (int[] size : SIZES) {
+      for (int keyframeInterval : KEYFRAME_INTERVALS) {
+        for (int threads : THREADS) {
+          String message = type + " " + size[0] + "x" + size[1] + " keyframes every "
+              + keyframeInterval + " on " + threads + " threads";
+          GridClass model = SimulationFactory.create(new SimulationInfo(type, "t", "a", "d",
+              size[1], size[0], randomGrid(random, size[0], size[1], weights),
+              new HashMap<>(Map.of("Seed", 4, "Threads", threads))));
+          File file = File.createTempFile("history", HistoryRecorder.EXTENSION, myFolder);
+          List<byte[]> frames = record(random, model, size, keyframeInterval, file);
+          try (HistoryReader reader = new HistoryReader(file.getPath())) {
+            assertEquals(frames.size(), reader.getStepCount(), message);
+            for (int step = 0; step < frames.size(); step++) {
+              assertArrayEquals(frames.get(step), reader.readStep(step), message + " " + step);
+            }
+            for (int step = frames.size() - 1; step >= 0; step -= 7) {
+              assertArrayEquals(frames.get(step), reader.readStep(step), message + " " + step);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // steps, steps back and resets the simulation at random, capturing each frame into the file the
+  // way GridView does, and returns the states it captured
+  private List<byte[]> record(Random random, GridClass model, int[] size, int keyframeInterval,
+      File file) {
+    RewindBuffer buffer = new RewindBuffer(model, BUFFER_MEGABYTES);
+    HistoryRecorder recorder = new HistoryRecorder(file, size[0], size[1], keyframeInterval);
+    List<byte[]> frames = new ArrayList<>();
+    recorder.capture(model);
+    frames.add(states(model, size));
+    for (int capture = 0; capture < CAPTURES; capture++) {
+      int move = random.nextInt(10);
+      if (move < 7) {
+        model.updateGrid();
+        buffer.record();
+        recorder.capture(model, buffer.getLastRows(), buffer.getLastCols());
+      } else if (move < 9) {
+        if (!buffer.stepBack()) {
+          continue;
+        }
+        recorder.capture(model, buffer.getLastRows(), buffer.getLastCols());
+      } else {
+        buffer.reset();
+        recorder.capture(model);
+      }
+      frames.add(states(model, size));
+    }
+    recorder.close();
+    return frames;
+  }
+
+  private static byte[] states(GridClass model, int[] size) {
+    byte[] cells = new byte[size[0] * size[1]];
+    model.copyStates(cells);
+    return cells;
+  }
+}
@@ -0,0 +1,123 @@
+package cellsociety.model;
+
+import static cellsociety.model.RandomGrids.copy;
+import static cellsociety.model.RandomGrids.randomGrid;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cellsociety.view.SimulationInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the ways GameOfLife can step a grid against a plain cell by cell reference on random
+ * grids, for Conway's rule and for another Life-like rule string.
+ *
+ * @author ERIC XIE
+ */
+class GameOfLifeTest {
+
+  private static final int[][] SIZES = {{1, 1}, {1, 70}, {70, 1}, {5, 5}, {17, 33}, {64, 64},
+      {65, 129}};
+  private static final double[] DENSITIES = {0.1, 0.35, 0.6};
+  private static final int STEPS = 40;
+  private static final int CONWAY_BIRTH = 1 << 3;
+  private static final int CONWAY_SURVIVAL = 1 << 2 | 1 << 3;
+
+  @Test
+  void packedMatchesReference() {
+    assertMatchesReference(Map.of());
+  }
+
+  @Test
+  void vectorMatchesReference() {
+    assertMatchesReference(Map.of("Bit Packing", 0));
+  }
+
+  @Test
+  void scalarMatchesReference() {
+    assertMatchesReference(Map.of("Bit Packing", 0, "Vector", 0));
+  }
+
+  @Test
+  void threadedPackedMatchesReference() {
+    assertMatchesReference(Map.of("Threads", 4));
+  }
+
+  @Test
+  void threadedVectorMatchesReference() {
+    assertMatchesReference(Map.of("Bit Packing", 0, "Threads", 3));
+  }
+
+  @Test
+  void threadedScalarMatchesReference() {
+    assertMatchesReference(Map.of("Bit Packing", 0, "Vector", 0, "Threads", 5));
+  }
+
+  @Test
+  void highLifeMatchesReference() {
+    assertMatchesReference(Map.of(), "B36/S23", 1 << 3 | 1 << 6, CONWAY_SURVIVAL);
+  }
+
+  @Test
+  void highLifeWithoutVectorMatchesReference() {
+    assertMatchesReference(Map.of("Vector", 0), "B36/S23", 1 << 3 | 1 << 6, CONWAY_SURVIVAL);
+  }
+
+  private void assertMatchesReference(Map<String, Integer> parameters) {
+    assertMatchesReference(parameters, "B3/S23", CONWAY_BIRTH, CONWAY_SURVIVAL);
+  }
+
+  private void assertMatchesReference(Map<String, Integer> parameters, String rule, int birth,
+      int survival) {
+    Random random = new Random(1);
+    for (int[] size : SIZES) {
+      for (double density : DENSITIES) {
+        int[][] grid = randomGrid(random, size[0], size[1], 1 - density, density);
+        GridClass model = new GameOfLife(new SimulationInfo("gameoflife", "t", "a", "d", size[1],
+            size[0], copy(grid), new HashMap<>(parameters), null, Map.of("Rule", rule)));
+        for (int step = 1; step <= STEPS; step++) {
+          model.updateGrid();
+          grid = referenceStep(grid, birth, survival);
+          assertSameStates(grid, model, rule + " " + parameters + " " + size[0] + "x" + size[1]
+              + " step " + step);
+        }
+      }
+    }
+  }
+
+  // one generation with every cell outside the grid dead, bit n of birth / survival set when n live
+  // neighbors make a dead cell live / keep a live cell alive
+  private static int[][] referenceStep(int[][] grid, int birth, int survival) {
+    int rows = grid.length;
+    int cols = grid[0].length;
+    int[][] next = new int[rows][cols];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        int alive = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+          for (int dc = -1; dc <= 1; dc++) {
+            int row = r + dr;
+            int col = c + dc;
+            if ((dr != 0 || dc != 0) && row >= 0 && row < rows && col >= 0 && col < cols) {
+              alive += grid[row][col];
+            }
+          }
+        }
+        int mask = grid[r][c] == 1 ? survival : birth;
+        next[r][c] = mask >> alive & 1;
+      }
+    }
+    return next;
+  }
+
+  static void assertSameStates(int[][] expected, GridClass model, String message) {
+    for (int r = 0; r < expected.length; r++) {
+      for (int c = 0; c < expected[r].length; c++) {
+        assertEquals(expected[r][c], Integer.parseInt(model.getCellState(r, c, true)),
+            message + " at " + r + "," + c);
+      }
+    }
+  }
+}
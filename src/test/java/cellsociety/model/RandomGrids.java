@@ -0,0 +1,50 @@
+package cellsociety.model;
+
+import java.util.Random;
+
+/**
+ * Random initial grids for the tests that step a simulation next to a reference or another copy of
+ * itself and compare the states.
+ *
+ * @author ERIC XIE
+ */
+public final class RandomGrids {
+
+  private RandomGrids() {
+  }
+
+  /**
+   * @param weights the share of the cells each state gets, state 0 first
+   * @return a grid with every cell drawn from the states by their weights
+   */
+  public static int[][] randomGrid(Random random, int rows, int cols, double... weights) {
+    double total = 0;
+    for (double weight : weights) {
+      total += weight;
+    }
+    int[][] grid = new int[rows][cols];
+    for (int[] row : grid) {
+      for (int c = 0; c < cols; c++) {
+        double draw = random.nextDouble() * total;
+        int state = 0;
+        while (state < weights.length - 1 && draw >= weights[state]) {
+          draw -= weights[state];
+          state++;
+        }
+        row[c] = state;
+      }
+    }
+    return grid;
+  }
+
+  /**
+   * @return a copy of the grid a simulation can be handed without changing it
+   */
+  public static int[][] copy(int[][] grid) {
+    int[][] copy = new int[grid.length][];
+    for (int r = 0; r < grid.length; r++) {
+      copy[r] = grid[r].clone();
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,143 @@
+package cellsociety.model;
+
+import static cellsociety.model.RandomGrids.copy;
+import static cellsociety.model.RandomGrids.randomGrid;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cellsociety.view.SimulationInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that stepping back and resetting through a RewindBuffer puts every simulation exactly
+ * where it was, and that running forward again from there retraces the same steps. Every
+ * simulation runs with its defaults and with each of its fast paths or rule sets switched on its
+ * own.
+ *
+ * @author ERIC XIE
+ */
+class RewindBufferTest {
+
+  // a simulation type with the parameters it runs on and the share of its cells in each state
+  private record Case(String type, Map<String, Integer> parameters, double... weights) {
+
+  }
+
+  private static final List<Case> CASES = List.of(
+      new Case("gameoflife", Map.of(), 0.7, 0.3),
+      new Case("gameoflife", Map.of("Bit Packing", 0), 0.7, 0.3),
+      new Case("gameoflife", Map.of("Bit Packing", 0, "Vector", 0), 0.7, 0.3),
+      new Case("rockpaperscissors", Map.of("Threshold Value", 2), 1, 1, 1),
+      new Case("rockpaperscissors", Map.of("Threshold Value", 2, "Vector", 0), 1, 1, 1),
+      new Case("cspercolation", Map.of(), 0.6, 0.02, 0.38),
+      new Case("cspercolation", Map.of("Frontier", 0), 0.6, 0.02, 0.38),
+      new Case("spreadingoffire", Map.of("Probability of Catching Fire", 60), 0.2, 0.78, 0.02),
+      new Case("spreadingoffire", Map.of("Probability of Catching Fire", 60, "Frontier", 0), 0.2,
+          0.78, 0.02),
+      new Case("schellingsegregation", Map.of(), 0.2, 0.4, 0.4),
+      new Case("watorworld", Map.of(), 0.5, 0.35, 0.15),
+      new Case("watorworld", Map.of("Breeding", 1), 0.5, 0.35, 0.15),
+      new Case("fallingsandandwater", Map.of(), 0.4, 0.1, 0.25, 0.25));
+  private static final int[][] SIZES = {{1, 1}, {2, 3}, {7, 40}, {33, 47}};
+  private static final int[] THREADS = {1, 3};
+  private static final int STEPS = 40;
+  private static final int STEPS_BACK = 15;
+  private static final int BUFFER_MEGABYTES = 64;
+
+  @Test
+  void stepBackRetracesEveryStep() {
+    forEachSimulation((record, trajectory) -> {
+      GridClass model = SimulationFactory.create(record.get());
+      RewindBuffer buffer = new RewindBuffer(model, BUFFER_MEGABYTES);
+      for (int step = 1; step <= STEPS; step++) {
+        model.updateGrid();
+        buffer.record();
+        assertArrayEquals(trajectory.get(step), states(model, trajectory),
+            "recording step " + step);
+      }
+      for (int back = 1; back <= STEPS_BACK; back++) {
+        assertTrue(buffer.stepBack());
+        assertArrayEquals(trajectory.get(STEPS - back), states(model, trajectory),
+            "step back " + back);
+      }
+      assertEquals(STEPS - STEPS_BACK, model.getStepCount());
+      for (int step = STEPS - STEPS_BACK + 1; step <= STEPS; step++) {
+        model.updateGrid();
+        buffer.record();
+        assertArrayEquals(trajectory.get(step), states(model, trajectory),
+            "replaying step " + step);
+      }
+    });
+  }
+
+  @Test
+  void resetReturnsToStartAndReplays() {
+    forEachSimulation((record, trajectory) -> {
+      GridClass model = SimulationFactory.create(record.get());
+      RewindBuffer buffer = new RewindBuffer(model, BUFFER_MEGABYTES);
+      for (int step = 1; step <= STEPS; step++) {
+        model.updateGrid();
+        buffer.record();
+        if (step % 5 == 0) {
+          buffer.stepBack();
+          buffer.stepBack();
+          model.updateGrid();
+          buffer.record();
+          model.updateGrid();
+          buffer.record();
+        }
+      }
+      assertArrayEquals(trajectory.get(STEPS), states(model, trajectory));
+      assertTrue(buffer.reset());
+      assertArrayEquals(trajectory.get(0), states(model, trajectory));
+      for (int step = 1; step <= STEPS; step++) {
+        model.updateGrid();
+        buffer.record();
+        assertArrayEquals(trajectory.get(step), states(model, trajectory),
+            "replaying step " + step);
+      }
+    });
+  }
+
+  // runs the check on every case, size and thread count with the states of an undisturbed run of
+  // the same simulation
+  private static void forEachSimulation(
+      BiConsumer<Supplier<SimulationInfo>, List<byte[]>> check) {
+    Random random = new Random(11);
+    for (Case simulation : CASES) {
+      for (int[] size : SIZES) {
+        for (int threads : THREADS) {
+          int[][] grid = randomGrid(random, size[0], size[1], simulation.weights());
+          Map<String, Integer> parameters = new HashMap<>(simulation.parameters());
+          parameters.put("Seed", 1234);
+          parameters.put("Threads", threads);
+          Supplier<SimulationInfo> record = () -> new SimulationInfo(simulation.type(), "t", "a",
+              "d", size[1], size[0], copy(grid), new HashMap<>(parameters));
+          GridClass model = SimulationFactory.create(record.get());
+          List<byte[]> trajectory = new ArrayList<>();
+          trajectory.add(new byte[size[0] * size[1]]);
+          model.copyStates(trajectory.get(0));
+          for (int step = 0; step < STEPS; step++) {
+            model.updateGrid();
+            trajectory.add(states(model, trajectory));
+          }
+          check.accept(record, trajectory);
+        }
+      }
+    }
+  }
+
+  private static byte[] states(GridClass model, List<byte[]> trajectory) {
+    byte[] cells = new byte[trajectory.get(0).length];
+    model.copyStates(cells);
+    return cells;
+  }
+}
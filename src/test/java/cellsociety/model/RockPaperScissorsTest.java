@@ -0,0 +1,93 @@
+package cellsociety.model;
+
+import static cellsociety.model.GameOfLifeTest.assertSameStates;
+import static cellsociety.model.RandomGrids.copy;
+import static cellsociety.model.RandomGrids.randomGrid;
+
+import cellsociety.view.SimulationInfo;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks RockPaperScissors with and without the Vector API stencil, on one thread and banded over
+ * several, against a plain cell by cell reference on random grids for every species count and
+ * threshold.
+ *
+ * @author ERIC XIE
+ */
+class RockPaperScissorsTest {
+
+  private static final int MAX_SPECIES = 10;
+  private static final int STEPS = 30;
+
+  @Test
+  void singleThreadMatchesReference() {
+    assertMatchesReference(Map.of());
+  }
+
+  @Test
+  void threadedMatchesReference() {
+    assertMatchesReference(Map.of("Threads", 3));
+  }
+
+  @Test
+  void tablePathMatchesReference() {
+    assertMatchesReference(Map.of("Vector", 0));
+  }
+
+  @Test
+  void threadedTablePathMatchesReference() {
+    assertMatchesReference(Map.of("Vector", 0, "Threads", 4));
+  }
+
+  private void assertMatchesReference(Map<String, Integer> options) {
+    Random random = new Random(3);
+    for (int species = 2; species <= MAX_SPECIES; species++) {
+      double[] weights = new double[species];
+      Arrays.fill(weights, 1);
+      for (int threshold = -1; threshold <= 9; threshold++) {
+        int rows = 1 + random.nextInt(50);
+        int cols = 1 + random.nextInt(90);
+        int[][] grid = randomGrid(random, rows, cols, weights);
+        Map<String, Integer> parameters = new HashMap<>(options);
+        parameters.put("Species", species);
+        parameters.put("Threshold Value", threshold);
+        GridClass model = new RockPaperScissors(new SimulationInfo("rockpaperscissors", "t", "a",
+            "d", cols, rows, copy(grid), parameters));
+        for (int step = 1; step <= STEPS; step++) {
+          model.updateGrid();
+          grid = referenceStep(grid, species, threshold);
+          assertSameStates(grid, model, parameters + " " + rows + "x" + cols + " step " + step);
+        }
+      }
+    }
+  }
+
+  // a cell turns into the species after it once more than threshold neighbors are that species
+  private static int[][] referenceStep(int[][] grid, int species, int threshold) {
+    int rows = grid.length;
+    int cols = grid[0].length;
+    int[][] next = new int[rows][cols];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        int hunter = (grid[r][c] + 1) % species;
+        int hunters = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+          for (int dc = -1; dc <= 1; dc++) {
+            int row = r + dr;
+            int col = c + dc;
+            if ((dr != 0 || dc != 0) && row >= 0 && row < rows && col >= 0 && col < cols
+                && grid[row][col] == hunter) {
+              hunters++;
+            }
+          }
+        }
+        next[r][c] = hunters > threshold ? hunter : grid[r][c];
+      }
+    }
+    return next;
+  }
+}